@@ -12,6 +12,9 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.servlet.http.HttpServletRequest;
@@ -49,9 +52,32 @@ import org.eniware.util.PropertySerializerRegistrar;
  * which is not usually desired. Defaults to
  * {@link #DEFAULT_JAVA_BEAN_STRING_VALUES}.</dd>
  * 
+ * <dt>parallelExecutor</dt>
+ * <dd>An optional {@link Executor} to encode large collections of rows with,
+ * in chunks, for views that support it. The encoded chunks are still written
+ * to the response in order. Rows and any configured property serializers
+ * are then accessed from executor threads, so must be thread-safe. The
+ * executor is not shut down by the view. Defaults to <em>null</em>, in which
+ * case rows are encoded on the rendering thread.</dd>
+ * 
+ * <dt>parallelChunkSize</dt>
+ * <dd>The number of rows to encode per chunk when a {@code parallelExecutor}
+ * is configured. Defaults to {@link OrderedChunkWriter#DEFAULT_CHUNK_SIZE}.</dd>
+ * 
+ * <dt>parallelMaxPendingChunks</dt>
+ * <dd>The maximum number of chunks to submit to the {@code parallelExecutor}
+ * before waiting for the oldest chunk to be written, which bounds the memory
+ * used per response. Defaults to
+ * {@link OrderedChunkWriter#DEFAULT_MAX_PENDING_CHUNKS}.</dd>
+ * 
  * </dl>
  * 
- * @version 1.0
+ * <p>
+ * JavaBean introspection results are cached per class, see
+ * {@link #getJavaBeanWritePlan(Class)}.
+ * </p>
+ * 
+ * @version 1.2
  */
 public abstract class AbstractView extends org.springframework.web.servlet.view.AbstractView {
 
@@ -76,6 +102,11 @@ public abstract class AbstractView extends org.springframework.web.servlet.view.
 			Arrays.asList(DEFAULT_JAVA_BEAN_IGNORE_PROPERTIES));
 	private Set<Class<?>> javaBeanTreatAsStringValues = new LinkedHashSet<Class<?>>(
 			Arrays.asList(DEFAULT_JAVA_BEAN_STRING_VALUES));
+	private Executor parallelExecutor = null;
+	private int parallelChunkSize = OrderedChunkWriter.DEFAULT_CHUNK_SIZE;
+	private int parallelMaxPendingChunks = OrderedChunkWriter.DEFAULT_MAX_PENDING_CHUNKS;
+	private final ConcurrentMap<Class<?>, JavaBeanWritePlan> javaBeanWritePlans = new ConcurrentHashMap<Class<?>, JavaBeanWritePlan>(
+			32);
 
 	/**
 	 * This method performs the same functions as
@@ -168,6 +199,49 @@ public abstract class AbstractView extends org.springframework.web.servlet.view.
 		return charset;
 	}
 
+	/**
+	 * Get the write plan for a JavaBean class, introspecting the class only
+	 * the first time it is requested.
+	 * 
+	 * @param beanClass
+	 *        the class to get the plan for
+	 * @return the plan
+	 * @since 1.1
+	 */
+	protected JavaBeanWritePlan getJavaBeanWritePlan(Class<?> beanClass) {
+		JavaBeanWritePlan plan = javaBeanWritePlans.get(beanClass);
+		if ( plan == null ) {
+			plan = JavaBeanWritePlan.forClass(beanClass);
+			JavaBeanWritePlan existing = javaBeanWritePlans.putIfAbsent(beanClass, plan);
+			if ( existing != null ) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Create a writer to encode rows in parallel with, if a
+	 * {@code parallelExecutor} is configured.
+	 * 
+	 * @param encoder
+	 *        the chunk encoder
+	 * @param sink
+	 *        the sink to write encoded chunks to
+	 * @return the writer, or {@literal null} if no {@code parallelExecutor} is
+	 *         configured
+	 * @since 1.2
+	 */
+	protected OrderedChunkWriter createOrderedChunkWriter(OrderedChunkWriter.ChunkEncoder encoder,
+			OrderedChunkWriter.ChunkSink sink) {
+		final Executor executor = parallelExecutor;
+		if ( executor == null ) {
+			return null;
+		}
+		return new OrderedChunkWriter(executor, parallelChunkSize, parallelMaxPendingChunks, encoder,
+				sink);
+	}
+
 	public PropertySerializerRegistrar getPropertySerializerRegistrar() {
 		return propertySerializerRegistrar;
 	}
@@ -200,4 +274,49 @@ public abstract class AbstractView extends org.springframework.web.servlet.view.
 		this.javaBeanTreatAsStringValues = javaBeanTreatAsStringValues;
 	}
 
+	public Executor getParallelExecutor() {
+		return parallelExecutor;
+	}
+
+	/**
+	 * Set the executor to encode rows in parallel with.
+	 * 
+	 * @param parallelExecutor
+	 *        the executor, or {@literal null} to encode on the rendering thread
+	 * @since 1.2
+	 */
+	public void setParallelExecutor(Executor parallelExecutor) {
+		this.parallelExecutor = parallelExecutor;
+	}
+
+	public int getParallelChunkSize() {
+		return parallelChunkSize;
+	}
+
+	/**
+	 * Set the number of rows to encode per chunk.
+	 * 
+	 * @param parallelChunkSize
+	 *        the chunk size
+	 * @since 1.2
+	 */
+	public void setParallelChunkSize(int parallelChunkSize) {
+		this.parallelChunkSize = parallelChunkSize;
+	}
+
+	public int getParallelMaxPendingChunks() {
+		return parallelMaxPendingChunks;
+	}
+
+	/**
+	 * Set the maximum number of chunks to encode ahead of the response.
+	 * 
+	 * @param parallelMaxPendingChunks
+	 *        the maximum pending chunk count
+	 * @since 1.2
+	 */
+	public void setParallelMaxPendingChunks(int parallelMaxPendingChunks) {
+		this.parallelMaxPendingChunks = parallelMaxPendingChunks;
+	}
+
 }
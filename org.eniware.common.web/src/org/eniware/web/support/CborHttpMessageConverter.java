@@ -0,0 +1,65 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.web.support;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.Assert;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * {@link HttpMessageConverter} that reads and writes CBOR
+ * documents, using the {@link #CBOR_MEDIA_TYPE} media type.
+ * 
+ * <p>
+ * The configured {@link ObjectMapper} must use a {@link CBORFactory}, for
+ * example one created by
+ * {@link org.eniware.util.ObjectMapperFactoryBean#createCborObjectMapper()} so
+ * it shares the configuration of the application's JSON mapper.
+ * </p>
+ * 
+ * @version 1.0
+ * @since 1.15
+ */
+public class CborHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+	/** The CBOR media type. */
+	public static final MediaType CBOR_MEDIA_TYPE = new MediaType("application", "cbor");
+
+	/**
+	 * Default constructor.
+	 * 
+	 * <p>
+	 * This uses a new, unconfigured CBOR mapper.
+	 * </p>
+	 */
+	public CborHttpMessageConverter() {
+		this(new ObjectMapper(new CBORFactory()));
+	}
+
+	/**
+	 * Construct with a mapper.
+	 * 
+	 * @param objectMapper
+	 *        the mapper to use; must use a {@link CBORFactory}
+	 */
+	public CborHttpMessageConverter(ObjectMapper objectMapper) {
+		super(objectMapper, CBOR_MEDIA_TYPE);
+		Assert.isInstanceOf(CBORFactory.class, objectMapper.getFactory(),
+				"CBORFactory required");
+	}
+
+	@Override
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		Assert.isInstanceOf(CBORFactory.class, objectMapper.getFactory(),
+				"CBORFactory required");
+		super.setObjectMapper(objectMapper);
+	}
+
+}
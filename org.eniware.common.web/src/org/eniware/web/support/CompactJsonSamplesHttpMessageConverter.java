@@ -0,0 +1,122 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.web.support;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.eniware.domain.GeneralDatumSamples;
+import org.eniware.domain.GeneralDatumSamplesCompactJson;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * {@link HttpMessageConverter} for the compact, schema-driven JSON form of
+ * {@link GeneralDatumSamples} collections.
+ *
+ * <p>
+ * This converter handles the {@link #COMPACT_JSON_MEDIA_TYPE} media type, so
+ * clients opt in to the compact form via the {@code Accept} or
+ * {@code Content-Type} header. See {@link GeneralDatumSamplesCompactJson} for
+ * a description of the format. Objects that are not collections of samples
+ * are written as normal JSON. Because this media type also matches the
+ * {@code application/*+json} type supported by the standard Jackson
+ * converter, this converter must be registered before that one.
+ * </p>
+ *
+ * <p>
+ * The configurable properties of this class are:
+ * </p>
+ *
+ * <dl class="class-properties">
+ * <dt>objectMapper</dt>
+ * <dd>The {@link ObjectMapper} to create generators and parsers with, and to
+ * write other objects with.</dd>
+ * </dl>
+ *
+ * @version 1.0
+ * @since 1.15
+ */
+public class CompactJsonSamplesHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+	/** The compact JSON media type. */
+	public static final MediaType COMPACT_JSON_MEDIA_TYPE = new MediaType("application",
+			"vnd.eniware.compact+json", Charset.forName("UTF-8"));
+
+	private ObjectMapper objectMapper = new ObjectMapper()
+			.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+	/**
+	 * Default constructor.
+	 */
+	public CompactJsonSamplesHttpMessageConverter() {
+		super(COMPACT_JSON_MEDIA_TYPE);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return (Iterable.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz));
+	}
+
+	@Override
+	protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage)
+			throws IOException, HttpMessageNotReadableException {
+		JsonParser parser = objectMapper.getFactory().createParser(inputMessage.getBody());
+		try {
+			if ( Map.class.isAssignableFrom(clazz) ) {
+				return GeneralDatumSamplesCompactJson.readGroups(parser);
+			}
+			return GeneralDatumSamplesCompactJson.read(parser);
+		} catch ( IOException e ) {
+			throw new HttpMessageNotReadableException("Could not read compact JSON: " + e.getMessage(),
+					e);
+		} finally {
+			parser.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	protected void writeInternal(Object t, HttpOutputMessage outputMessage)
+			throws IOException, HttpMessageNotWritableException {
+		JsonGenerator generator = objectMapper.getFactory().createGenerator(outputMessage.getBody(),
+				JsonEncoding.UTF8);
+		try {
+			if ( !GeneralDatumSamplesCompactJson.isCompactable(t) ) {
+				objectMapper.writeValue(generator, t);
+			} else if ( t instanceof Map ) {
+				GeneralDatumSamplesCompactJson.writeGroups(generator,
+						(Map<?, ? extends Iterable<? extends GeneralDatumSamples>>) t);
+			} else {
+				GeneralDatumSamplesCompactJson.write(generator,
+						(Iterable<? extends GeneralDatumSamples>) t);
+			}
+		} finally {
+			generator.close();
+		}
+	}
+
+	public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+}
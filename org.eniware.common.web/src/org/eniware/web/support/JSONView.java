@@ -6,12 +6,13 @@
 
 package org.eniware.web.support;
 
-import java.beans.PropertyDescriptor;
 import java.beans.PropertyEditor;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
-import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
@@ -20,16 +21,18 @@ import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eniware.util.SerializeIgnore;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.beans.PropertyEditorRegistrar;
+import org.springframework.beans.PropertyEditorRegistry;
+import org.springframework.beans.SimpleTypeConverter;
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 
 /**
  * View to return JSON encoded data.
@@ -72,9 +75,33 @@ import com.fasterxml.jackson.core.JsonGenerator;
  * serialize specific objects into String values. This can be useful for
  * formatting Date objects into strings, for example.</dd>
  * 
+ * <dt>byteStream</dt>
+ * <dd>If <em>true</em> then write UTF-8 bytes directly to the response output
+ * stream, instead of characters to the response writer. Defaults to
+ * <em>false</em>.</dd>
+ * 
+ * <dt>flushThreshold</dt>
+ * <dd>When {@code byteStream} is enabled, the number of bytes after which the
+ * response is flushed to the client, so large responses are sent in chunks
+ * as they are generated. Set to {@code 0} to only flush at the end of the
+ * response. Defaults to {@link #DEFAULT_FLUSH_THRESHOLD}.</dd>
+ * 
  * </dl>
+ * 
+ * <p>
+ * See {@link AbstractView} for the properties to encode rows in parallel
+ * with. When a {@code parallelExecutor} is configured, model values that are
+ * collections or object arrays with more than {@code parallelChunkSize}
+ * elements are encoded in parallel, unless {@code indentAmount} is also
+ * configured.
+ * </p>
+ * 
+ * <p>
+ * JavaBean properties are written using a {@link JavaBeanWritePlan} cached
+ * per class, so each class is introspected only once.
+ * </p>
  *
- * @version 1.1
+ * @version 1.4
  */
 public class JSONView extends AbstractView {
 
@@ -84,7 +111,18 @@ public class JSONView extends AbstractView {
 	/** The default character encoding used: UTF-8. */
 	public static final String UTF8_CHAR_ENCODING = "UTF-8";
 
+	/** The default value for the {@code flushThreshold} property. */
+	public static final int DEFAULT_FLUSH_THRESHOLD = 65536;
+
+	/** A shared, thread-safe factory for all JSON generators. */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/** The separator between array elements encoded in parallel. */
+	private static final SerializedString CHUNK_VALUE_SEPARATOR = new SerializedString(",");
+
 	private int indentAmount = 0;
+	private boolean byteStream = false;
+	private int flushThreshold = DEFAULT_FLUSH_THRESHOLD;
 	private boolean includeParentheses = false;
 	private PropertyEditorRegistrar propertyEditorRegistrar = null;
 
@@ -110,13 +148,33 @@ public class JSONView extends AbstractView {
 			}
 		}
 
+		// register editors once per response, rather than once per bean
+		if ( getPropertySerializerRegistrar() != null ) {
+			registrar = null;
+		}
+		PropertyEditorRegistry editors = createEditors(registrar);
+
 		response.setCharacterEncoding(UTF8_CHAR_ENCODING);
 		response.setContentType(getContentType());
-		Writer writer = response.getWriter();
-		if ( this.includeParentheses ) {
-			writer.write('(');
+		Writer writer = null;
+		OutputStream out = null;
+		JsonGenerator json;
+		if ( byteStream ) {
+			out = response.getOutputStream();
+			if ( flushThreshold > 0 ) {
+				out = new ThresholdFlushingOutputStream(out, flushThreshold);
+			}
+			if ( this.includeParentheses ) {
+				out.write('(');
+			}
+			json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+		} else {
+			writer = response.getWriter();
+			if ( this.includeParentheses ) {
+				writer.write('(');
+			}
+			json = JSON_FACTORY.createGenerator(writer);
 		}
-		JsonGenerator json = new JsonFactory().createGenerator(writer);
 		json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
 		if ( indentAmount > 0 ) {
 			json.useDefaultPrettyPrinter();
@@ -124,13 +182,164 @@ public class JSONView extends AbstractView {
 		json.writeStartObject();
 		for ( String key : model.keySet() ) {
 			Object val = model.get(key);
-			writeJsonValue(json, key, val, registrar);
+			if ( !writeJsonArrayInParallel(json, key, val, registrar) ) {
+				writeJsonValue(json, key, val, editors);
+			}
 		}
 		json.writeEndObject();
 		json.close();
 		if ( this.includeParentheses ) {
-			writer.write(')');
+			if ( out != null ) {
+				out.write(')');
+			} else {
+				writer.write(')');
+			}
+		}
+		if ( out != null ) {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Output stream that flushes the underlying stream every time a threshold
+	 * number of bytes have been written, so the response is sent to the
+	 * client in chunks as it is generated.
+	 */
+	private static final class ThresholdFlushingOutputStream extends FilterOutputStream {
+
+		private final int threshold;
+		private int count = 0;
+
+		private ThresholdFlushingOutputStream(OutputStream out, int threshold) {
+			super(out);
+			this.threshold = threshold;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+			flushIfNeeded();
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+			flushIfNeeded();
+		}
+
+		private void flushIfNeeded() throws IOException {
+			if ( count >= threshold ) {
+				count = 0;
+				out.flush();
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			count = 0;
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			// the servlet container manages the response stream
+			flush();
+		}
+
+	}
+
+	private static PropertyEditorRegistry createEditors(PropertyEditorRegistrar registrar) {
+		if ( registrar == null ) {
+			return null;
+		}
+		SimpleTypeConverter converter = new SimpleTypeConverter();
+		registrar.registerCustomEditors(converter);
+		return converter;
+	}
+
+	/**
+	 * Write a large collection or object array model value as a JSON array,
+	 * encoding the elements in chunks with an {@link OrderedChunkWriter}.
+	 * 
+	 * <p>
+	 * Each chunk is encoded by its own generator, with its own property
+	 * editors because editors are not thread-safe, and then written as raw
+	 * JSON into the array. Raw JSON cannot be pretty printed, so nothing is
+	 * written in parallel if {@code indentAmount} is configured.
+	 * </p>
+	 * 
+	 * @return {@literal true} if the value was written
+	 */
+	private boolean writeJsonArrayInParallel(final JsonGenerator json, final String key,
+			final Object val, final PropertyEditorRegistrar registrar) throws IOException {
+		if ( indentAmount > 0 || getParallelExecutor() == null ) {
+			return false;
+		}
+		final Collection<?> col;
+		if ( val instanceof Collection<?> ) {
+			col = (Collection<?>) val;
+		} else if ( val instanceof Object[] ) {
+			col = Arrays.asList((Object[]) val);
+		} else {
+			return false;
+		}
+		if ( col.size() <= getParallelChunkSize() ) {
+			return false;
+		}
+		final OrderedChunkWriter chunkWriter = createOrderedChunkWriter(
+				new OrderedChunkWriter.ChunkEncoder() {
+
+					@Override
+					public String encodeChunk(List<Object> rows) throws IOException {
+						final StringWriter buf = new StringWriter(rows.size() * 128);
+						final JsonGenerator gen = JSON_FACTORY.createGenerator(buf);
+						gen.setRootValueSeparator(CHUNK_VALUE_SEPARATOR);
+						final PropertyEditorRegistry editors = createEditors(registrar);
+						for ( Object row : rows ) {
+							writeJsonValue(gen, null, row, editors);
+						}
+						gen.close();
+						return buf.toString();
+					}
+				}, new OrderedChunkWriter.ChunkSink() {
+
+					private boolean written = false;
+
+					@Override
+					public boolean writeChunk(String chunk, int index) throws IOException {
+						// rows serialized to null produce no output, so chunks may be empty
+						if ( chunk.length() < 1 ) {
+							return true;
+						}
+						if ( written ) {
+							json.writeRaw(',');
+						}
+						json.writeRaw(chunk);
+						written = true;
+						return true;
+					}
+				});
+		if ( chunkWriter == null ) {
+			return false;
 		}
+		json.writeFieldName(key);
+		json.writeStartArray();
+		boolean done = false;
+		try {
+			for ( Object o : col ) {
+				chunkWriter.add(o);
+			}
+			chunkWriter.finish();
+			done = true;
+		} finally {
+			if ( !done ) {
+				chunkWriter.cancel();
+			}
+		}
+		json.writeEndArray();
+		return true;
 	}
 
 	private Collection<?> getPrimitiveCollection(Object array) {
@@ -143,7 +352,7 @@ public class JSONView extends AbstractView {
 	}
 
 	private void writeJsonValue(JsonGenerator json, String key, Object val,
-			PropertyEditorRegistrar registrar) throws JsonGenerationException, IOException {
+			PropertyEditorRegistry editors) throws JsonGenerationException, IOException {
 		if ( val instanceof Collection<?> || (val != null && val.getClass().isArray()) ) {
 			Collection<?> col;
 			if ( val instanceof Collection<?> ) {
@@ -159,7 +368,7 @@ public class JSONView extends AbstractView {
 			}
 			json.writeStartArray();
 			for ( Object colObj : col ) {
-				writeJsonValue(json, null, colObj, registrar);
+				writeJsonValue(json, null, colObj, editors);
 			}
 
 			json.writeEndArray();
@@ -173,7 +382,7 @@ public class JSONView extends AbstractView {
 				if ( propName == null ) {
 					continue;
 				}
-				writeJsonValue(json, propName.toString(), me.getValue(), registrar);
+				writeJsonValue(json, propName.toString(), me.getValue(), editors);
 			}
 			json.writeEndObject();
 		} else if ( val instanceof Double ) {
@@ -238,17 +447,17 @@ public class JSONView extends AbstractView {
 						val);
 				if ( o != val ) {
 					if ( o != null ) {
-						writeJsonValue(json, key, o, registrar);
+						writeJsonValue(json, key, o, editors);
 					}
 					return;
 				}
 			}
-			generateJavaBeanObject(json, key, val, registrar);
+			generateJavaBeanObject(json, key, val, editors);
 		}
 	}
 
 	private void generateJavaBeanObject(JsonGenerator json, String key, Object bean,
-			PropertyEditorRegistrar registrar) throws JsonGenerationException, IOException {
+			PropertyEditorRegistry editors) throws JsonGenerationException, IOException {
 		if ( key != null ) {
 			json.writeFieldName(key);
 		}
@@ -256,55 +465,39 @@ public class JSONView extends AbstractView {
 			json.writeNull();
 			return;
 		}
-		BeanWrapper wrapper = getPropertyAccessor(bean, registrar);
-		PropertyDescriptor[] props = wrapper.getPropertyDescriptors();
+		final JavaBeanWritePlan plan = getJavaBeanWritePlan(bean.getClass());
+		final Set<String> ignoreProps = getJavaBeanIgnoreProperties();
+		final Set<Class<?>> stringTypes = getJavaBeanTreatAsStringValues();
 		json.writeStartObject();
-		for ( PropertyDescriptor prop : props ) {
+		for ( JavaBeanWritePlan.Property prop : plan.getProperties() ) {
 			String name = prop.getName();
-			if ( this.getJavaBeanIgnoreProperties() != null
-					&& this.getJavaBeanIgnoreProperties().contains(name) ) {
+			if ( ignoreProps != null && ignoreProps.contains(name) ) {
 				continue;
 			}
-			if ( wrapper.isReadableProperty(name) ) {
-				Object propVal = wrapper.getPropertyValue(name);
-				if ( propVal != null ) {
-
-					// test for SerializeIgnore
-					Method getter = prop.getReadMethod();
-					if ( getter != null && getter.isAnnotationPresent(SerializeIgnore.class) ) {
-						continue;
-					}
-
-					if ( getPropertySerializerRegistrar() != null ) {
-						propVal = getPropertySerializerRegistrar().serializeProperty(name,
-								propVal.getClass(), bean, propVal);
-					} else {
-						// Spring does not apply PropertyEditors on read methods, so manually handle
-						PropertyEditor editor = wrapper.findCustomEditor(null, name);
-						if ( editor != null ) {
-							editor.setValue(propVal);
-							propVal = editor.getAsText();
-						}
-					}
-					if ( propVal instanceof Enum<?> || getJavaBeanTreatAsStringValues() != null
-							&& getJavaBeanTreatAsStringValues().contains(propVal.getClass()) ) {
-						propVal = propVal.toString();
-					}
-					writeJsonValue(json, name, propVal, registrar);
+			Object propVal = prop.getValue(bean);
+			if ( propVal == null ) {
+				continue;
+			}
+			if ( getPropertySerializerRegistrar() != null ) {
+				propVal = getPropertySerializerRegistrar().serializeProperty(name, propVal.getClass(),
+						bean, propVal);
+			} else if ( editors != null ) {
+				// Spring does not apply PropertyEditors on read methods, so manually handle
+				PropertyEditor editor = editors.findCustomEditor(prop.getPropertyType(), name);
+				if ( editor != null ) {
+					editor.setValue(propVal);
+					propVal = editor.getAsText();
 				}
 			}
+			if ( propVal instanceof Enum<?>
+					|| stringTypes != null && propVal != null && stringTypes.contains(propVal.getClass()) ) {
+				propVal = propVal.toString();
+			}
+			writeJsonValue(json, name, propVal, editors);
 		}
 		json.writeEndObject();
 	}
 
-	private BeanWrapper getPropertyAccessor(Object obj, PropertyEditorRegistrar registrar) {
-		BeanWrapper bean = PropertyAccessorFactory.forBeanPropertyAccess(obj);
-		if ( registrar != null ) {
-			registrar.registerCustomEditors(bean);
-		}
-		return bean;
-	}
-
 	public int getIndentAmount() {
 		return indentAmount;
 	}
@@ -329,4 +522,36 @@ public class JSONView extends AbstractView {
 		this.propertyEditorRegistrar = propertyEditorRegistrar;
 	}
 
+	public boolean isByteStream() {
+		return byteStream;
+	}
+
+	/**
+	 * Set the byte stream mode.
+	 * 
+	 * @param byteStream
+	 *        {@literal true} to write UTF-8 bytes directly to the response
+	 *        output stream
+	 * @since 1.3
+	 */
+	public void setByteStream(boolean byteStream) {
+		this.byteStream = byteStream;
+	}
+
+	public int getFlushThreshold() {
+		return flushThreshold;
+	}
+
+	/**
+	 * Set the number of bytes after which to flush the response in byte stream
+	 * mode.
+	 * 
+	 * @param flushThreshold
+	 *        the flush threshold, or {@code 0} to only flush at the end
+	 * @since 1.3
+	 */
+	public void setFlushThreshold(int flushThreshold) {
+		this.flushThreshold = flushThreshold;
+	}
+
 }
@@ -0,0 +1,136 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.web.support;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eniware.util.SerializeIgnore;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The readable JavaBean properties of a class, introspected once so that
+ * instances of the class can be written without further introspection.
+ *
+ * <p>
+ * Properties are ordered the same as the property descriptors of a Spring
+ * {@link org.springframework.beans.BeanWrapper}. Properties without a read
+ * method, or whose read method is annotated with {@link SerializeIgnore}, are
+ * excluded. Plans are immutable and thread-safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.15
+ */
+public final class JavaBeanWritePlan {
+
+	/**
+	 * A readable property of a JavaBean.
+	 */
+	public static final class Property {
+
+		private final String name;
+		private final Class<?> propertyType;
+		private final Method getter;
+
+		private Property(String name, Class<?> propertyType, Method getter) {
+			super();
+			this.name = name;
+			this.propertyType = propertyType;
+			this.getter = getter;
+		}
+
+		/**
+		 * Get the property name.
+		 *
+		 * @return the name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Get the declared property type.
+		 *
+		 * @return the type
+		 */
+		public Class<?> getPropertyType() {
+			return propertyType;
+		}
+
+		/**
+		 * Read the property value from a bean.
+		 *
+		 * @param bean
+		 *        the bean to read from; must be an instance of the plan's class
+		 * @return the property value
+		 * @throws RuntimeException
+		 *         if the read method throws an exception
+		 */
+		public Object getValue(Object bean) {
+			return ReflectionUtils.invokeMethod(getter, bean);
+		}
+
+	}
+
+	private final Class<?> beanClass;
+	private final List<Property> properties;
+
+	private JavaBeanWritePlan(Class<?> beanClass, List<Property> properties) {
+		super();
+		this.beanClass = beanClass;
+		this.properties = properties;
+	}
+
+	/**
+	 * Introspect a class to create a plan for it.
+	 *
+	 * @param beanClass
+	 *        the class to introspect
+	 * @return the plan
+	 */
+	public static JavaBeanWritePlan forClass(Class<?> beanClass) {
+		PropertyDescriptor[] descriptors = BeanUtils.getPropertyDescriptors(beanClass);
+		List<Property> props = new ArrayList<Property>(descriptors.length);
+		for ( PropertyDescriptor prop : descriptors ) {
+			Method getter = prop.getReadMethod();
+			if ( getter == null || getter.isAnnotationPresent(SerializeIgnore.class) ) {
+				continue;
+			}
+			if ( !Modifier.isPublic(getter.getDeclaringClass().getModifiers())
+					|| !Modifier.isPublic(getter.getModifiers()) ) {
+				ReflectionUtils.makeAccessible(getter);
+			}
+			props.add(new Property(prop.getName(), prop.getPropertyType(), getter));
+		}
+		return new JavaBeanWritePlan(beanClass, Collections.unmodifiableList(props));
+	}
+
+	/**
+	 * Get the class this plan is for.
+	 *
+	 * @return the class
+	 */
+	public Class<?> getBeanClass() {
+		return beanClass;
+	}
+
+	/**
+	 * Get the readable properties, in order.
+	 *
+	 * @return the properties, never {@literal null}
+	 */
+	public List<Property> getProperties() {
+		return properties;
+	}
+
+}
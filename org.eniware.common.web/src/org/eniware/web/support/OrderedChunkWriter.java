@@ -0,0 +1,219 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.web.support;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Encodes rows into text in fixed-size chunks on an {@link Executor}, and
+ * writes the encoded chunks to a sink in their original order.
+ *
+ * <p>
+ * Rows are added on the calling thread, which is also the only thread that
+ * writes to the sink. Each full chunk of rows is submitted to the executor to
+ * be encoded, and once more than {@code maxPendingChunks} chunks are pending
+ * the calling thread waits for the oldest chunk to be encoded and writes it
+ * to the sink. Memory use is thus bounded by
+ * {@code chunkSize * (maxPendingChunks + 1)} rows, no matter how many rows
+ * are added. The encoder is called concurrently from executor threads, so it
+ * must be thread-safe. This class is <b>not</b> thread-safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.15
+ */
+public class OrderedChunkWriter {
+
+	/** The default chunk size. */
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
+	/** The default maximum number of pending chunks. */
+	public static final int DEFAULT_MAX_PENDING_CHUNKS = 8;
+
+	/**
+	 * API for encoding a chunk of rows.
+	 */
+	public interface ChunkEncoder {
+
+		/**
+		 * Encode a chunk of rows.
+		 *
+		 * @param rows
+		 *        the rows to encode
+		 * @return the encoded rows
+		 * @throws IOException
+		 *         if an IO error occurs
+		 */
+		String encodeChunk(List<Object> rows) throws IOException;
+
+	}
+
+	/**
+	 * API for writing encoded chunks.
+	 */
+	public interface ChunkSink {
+
+		/**
+		 * Write an encoded chunk.
+		 *
+		 * @param chunk
+		 *        the encoded chunk
+		 * @param index
+		 *        the zero-based index of the chunk
+		 * @return {@literal true} to continue, {@literal false} to stop
+		 *         writing
+		 * @throws IOException
+		 *         if an IO error occurs
+		 */
+		boolean writeChunk(String chunk, int index) throws IOException;
+
+	}
+
+	private final Executor executor;
+	private final int chunkSize;
+	private final int maxPendingChunks;
+	private final ChunkEncoder encoder;
+	private final ChunkSink sink;
+	private final LinkedList<Future<String>> pending = new LinkedList<Future<String>>();
+	private List<Object> chunk;
+	private int chunkIndex = 0;
+	private boolean stopped = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor
+	 *        the executor to encode chunks with
+	 * @param chunkSize
+	 *        the number of rows per chunk
+	 * @param maxPendingChunks
+	 *        the maximum number of chunks to submit to the executor before
+	 *        waiting for the oldest to be written
+	 * @param encoder
+	 *        the chunk encoder
+	 * @param sink
+	 *        the sink to write encoded chunks to
+	 */
+	public OrderedChunkWriter(Executor executor, int chunkSize, int maxPendingChunks,
+			ChunkEncoder encoder, ChunkSink sink) {
+		super();
+		this.executor = executor;
+		this.chunkSize = (chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE);
+		this.maxPendingChunks = (maxPendingChunks > 0 ? maxPendingChunks : DEFAULT_MAX_PENDING_CHUNKS);
+		this.encoder = encoder;
+		this.sink = sink;
+	}
+
+	/**
+	 * Add a row.
+	 *
+	 * @param row
+	 *        the row to add
+	 * @return {@literal true} to continue adding rows, {@literal false} if the
+	 *         sink has stopped writing
+	 * @throws IOException
+	 *         if an error occurs encoding or writing a chunk
+	 */
+	public boolean add(Object row) throws IOException {
+		if ( stopped ) {
+			return false;
+		}
+		if ( chunk == null ) {
+			chunk = new ArrayList<Object>(chunkSize);
+		}
+		chunk.add(row);
+		if ( chunk.size() >= chunkSize ) {
+			submitChunk();
+			while ( !stopped && pending.size() > maxPendingChunks ) {
+				writeNextChunk();
+			}
+		}
+		return !stopped;
+	}
+
+	/**
+	 * Submit any partial chunk and write all pending chunks.
+	 *
+	 * @throws IOException
+	 *         if an error occurs encoding or writing a chunk
+	 */
+	public void finish() throws IOException {
+		if ( chunk != null && !stopped ) {
+			submitChunk();
+		}
+		while ( !stopped && !pending.isEmpty() ) {
+			writeNextChunk();
+		}
+	}
+
+	/**
+	 * Cancel all pending chunks.
+	 *
+	 * <p>
+	 * This should be called if writing fails, so no more executor time is
+	 * spent encoding chunks that will not be written.
+	 * </p>
+	 */
+	public void cancel() {
+		stopped = true;
+		chunk = null;
+		for ( Future<String> f : pending ) {
+			f.cancel(false);
+		}
+		pending.clear();
+	}
+
+	private void submitChunk() {
+		final List<Object> rows = chunk;
+		chunk = null;
+		FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return encoder.encodeChunk(rows);
+			}
+		});
+		executor.execute(task);
+		pending.add(task);
+	}
+
+	private void writeNextChunk() throws IOException {
+		final Future<String> f = pending.removeFirst();
+		final String result;
+		try {
+			result = f.get();
+		} catch ( InterruptedException e ) {
+			cancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for chunk " + chunkIndex);
+		} catch ( ExecutionException e ) {
+			cancel();
+			Throwable t = e.getCause();
+			if ( t instanceof IOException ) {
+				throw (IOException) t;
+			} else if ( t instanceof RuntimeException ) {
+				throw (RuntimeException) t;
+			} else if ( t instanceof Error ) {
+				throw (Error) t;
+			}
+			throw new IOException("Error encoding chunk " + chunkIndex, t);
+		}
+		if ( !sink.writeChunk(result, chunkIndex++) ) {
+			cancel();
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.web.support;
+
+import java.io.IOException;
+
+/**
+ * API for a source of rows that pushes each row to a handler as it is
+ * produced.
+ *
+ * <p>
+ * This can be placed in a view model in place of a collection, so rows can be
+ * rendered as they are produced (for example from a database cursor) rather
+ * than first collected into memory.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.15
+ */
+public interface RowProducer {
+
+	/**
+	 * API for handling single rows.
+	 */
+	public interface RowHandler {
+
+		/**
+		 * Handle a row.
+		 *
+		 * @param row
+		 *        the row
+		 * @return {@literal true} to continue producing rows, {@literal false}
+		 *         to stop
+		 * @throws IOException
+		 *         if an IO error occurs
+		 */
+		boolean handleRow(Object row) throws IOException;
+
+	}
+
+	/**
+	 * Produce rows, passing each to a handler.
+	 *
+	 * <p>
+	 * Rows must be passed to the handler on the calling thread, one at a time,
+	 * and production must stop as soon as the handler returns {@literal false}
+	 * or throws an exception.
+	 * </p>
+	 *
+	 * @param handler
+	 *        the handler to pass rows to
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	void produceRows(RowHandler handler) throws IOException;
+
+}
@@ -6,26 +6,25 @@
 
 package org.eniware.web.support;
 
-import java.beans.PropertyDescriptor;
-import java.beans.PropertyEditor;
+import java.io.Closeable;
 import java.io.IOException;
-import java.lang.reflect.Method;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.eniware.util.SerializeIgnore;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.PropertyAccessorFactory;
-import org.supercsv.io.CsvMapWriter;
-import org.supercsv.io.ICsvMapWriter;
+import org.supercsv.io.CsvListWriter;
+import org.supercsv.io.ICsvListWriter;
 import org.supercsv.prefs.CsvPreference;
 
 /**
@@ -54,10 +53,37 @@ import org.supercsv.prefs.CsvPreference;
  * be determined by the natural iteration order of the Map keys, and for
  * JavaBean objects the bean properties will be exported in case-insensitive
  * alphabetical order. Defaults to {@link #DEFAULT_FIELD_ORDER_KEY}.</dd>
+ * 
+ * <dt>flushRowCount</dt>
+ * <dd>The number of rows after which the response is flushed to the client, so
+ * large exports are sent as they are generated. Set to {@code 0} to only flush
+ * at the end of the response. Defaults to
+ * {@link #DEFAULT_FLUSH_ROW_COUNT}.</dd>
+ * 
+ * <dt>includeHeader</dt>
+ * <dd>If <em>true</em> then output a header row of the field names before the
+ * data rows. Defaults to <em>true</em>.</dd>
  * </dl>
  * 
+ * <p>
+ * See {@link AbstractView} for the properties to encode rows in parallel
+ * with. When a {@code parallelExecutor} is configured, the response is
+ * flushed after every chunk unless {@code flushRowCount} is {@code 0}.
+ * </p>
+ * 
+ * <p>
+ * The data object may be an {@link Iterable}, an {@link Iterator}, a
+ * {@link Stream}, or a {@link RowProducer}, in which case each row is written
+ * as it is pulled from (or pushed by) the data object, so rows need not be
+ * collected into memory first. Any other object is rendered as a single row.
+ * A {@link Stream} data object is closed after rendering, as is a data object
+ * (or the iterator obtained from an {@link Iterable}) that implements
+ * {@link Closeable}. If the client closes the
+ * connection while rows are being written, no more rows are pulled from the
+ * data object and the error is logged at debug level only.
+ * </p>
  * 
- * @version $Revision$
+ * @version 1.3
  */
 public class SimpleCsvView extends AbstractView {
 
@@ -70,8 +96,13 @@ public class SimpleCsvView extends AbstractView {
 	/** The default value for the {@code fieldOrderKey} property. */
 	public static final String DEFAULT_FIELD_ORDER_KEY = "fieldOrder";
 
+	/** The default value for the {@code flushRowCount} property. */
+	public static final int DEFAULT_FLUSH_ROW_COUNT = 1000;
+
 	private String dataModelKey = DEFAULT_DATA_MODEL_KEY;
 	private String fieldOrderKey = DEFAULT_FIELD_ORDER_KEY;
+	private int flushRowCount = DEFAULT_FLUSH_ROW_COUNT;
+	private boolean includeHeader = true;
 
 	/**
 	 * Default constructor.
@@ -105,54 +136,281 @@ public class SimpleCsvView extends AbstractView {
 				&& model.get(fieldOrderKey) instanceof Collection ? (Collection<String>) model
 				.get(fieldOrderKey) : null);
 
-		Iterable<?> rows = null;
-		if ( data instanceof Iterable ) {
-			rows = (Iterable<?>) data;
-		} else {
-			List<Object> tmpList = new ArrayList<Object>(1);
-			tmpList.add(data);
-			rows = tmpList;
+		final CsvRowHandler handler = new CsvRowHandler(response, fieldOrder);
+		Iterator<?> rowIterator = null;
+		try {
+			if ( data instanceof RowProducer ) {
+				((RowProducer) data).produceRows(handler);
+			} else {
+				if ( data instanceof Iterator ) {
+					rowIterator = (Iterator<?>) data;
+				} else if ( data instanceof Stream ) {
+					rowIterator = ((Stream<?>) data).iterator();
+				} else if ( data instanceof Iterable ) {
+					rowIterator = ((Iterable<?>) data).iterator();
+				} else {
+					rowIterator = Collections.singletonList(data).iterator();
+				}
+				while ( rowIterator.hasNext() && handler.handleRow(rowIterator.next()) ) {
+					// continue
+				}
+			}
+			handler.finish();
+		} catch ( IOException e ) {
+			if ( !handler.aborted ) {
+				throw e;
+			}
+		} finally {
+			handler.close();
+			if ( handler.aborted && logger.isDebugEnabled() ) {
+				logger.debug("CSV response aborted by client after " + handler.rowCount + " rows");
+			}
+			if ( rowIterator != data ) {
+				closeQuietly(rowIterator);
+			}
+			closeQuietly(data);
 		}
+	}
 
-		Object row = null;
-		Iterator<?> rowIterator = rows.iterator();
-		if ( !rowIterator.hasNext() ) {
-			return;
+	/**
+	 * Writes rows to the response as they are handled.
+	 * 
+	 * <p>
+	 * The response writer is obtained and the CSV fields are determined when
+	 * the first row is handled. If the first row is {@literal null}, nothing is
+	 * written. An {@link IOException} thrown while writing to the response,
+	 * or an error reported by the response {@link PrintWriter} after a flush,
+	 * is normally caused by the client closing the connection and sets
+	 * {@code aborted}. If a parallel executor is configured, rows after the
+	 * header are encoded in chunks by an {@link OrderedChunkWriter}.
+	 * </p>
+	 */
+	private final class CsvRowHandler
+			implements RowProducer.RowHandler, OrderedChunkWriter.ChunkEncoder,
+			OrderedChunkWriter.ChunkSink {
+
+		private final HttpServletResponse response;
+		private final Collection<String> fieldOrder;
+		private PrintWriter out;
+		private ICsvListWriter writer;
+		private String[] fields;
+		private CsvRowEncoder encoder;
+		private OrderedChunkWriter chunkWriter;
+		private boolean finished;
+		private boolean aborted;
+		private long rowCount;
+
+		private CsvRowHandler(HttpServletResponse response, Collection<String> fieldOrder) {
+			super();
+			this.response = response;
+			this.fieldOrder = fieldOrder;
 		}
 
-		// get first row, to use for fields
-		row = rowIterator.next();
-		if ( row == null ) {
-			return;
+		@Override
+		public boolean handleRow(Object row) throws IOException {
+			if ( finished ) {
+				return false;
+			}
+			if ( fields == null ) {
+				if ( row == null ) {
+					finished = true;
+					return false;
+				}
+				final List<String> fieldList = getCSVFields(row, fieldOrder);
+				fields = fieldList.toArray(new String[fieldList.size()]);
+				encoder = new CsvRowEncoder(fields);
+				try {
+					out = response.getWriter();
+					writer = new CsvListWriter(out, CsvPreference.EXCEL_PREFERENCE);
+					if ( includeHeader ) {
+						writer.writeHeader(fields);
+					}
+					chunkWriter = createOrderedChunkWriter(this, this);
+					if ( chunkWriter != null ) {
+						// chunks are written directly to the response writer
+						writer.flush();
+					}
+				} catch ( IOException e ) {
+					aborted = true;
+					throw e;
+				}
+			}
+			if ( chunkWriter != null ) {
+				if ( !chunkWriter.add(row) ) {
+					finished = true;
+					return false;
+				}
+				rowCount++;
+				return true;
+			}
+			try {
+				encoder.writeRow(writer, row);
+				rowCount++;
+				if ( flushRowCount > 0 && (rowCount % flushRowCount) == 0 ) {
+					writer.flush();
+					if ( out.checkError() ) {
+						// the servlet writer swallows IOException, so treat as client abort
+						aborted = true;
+						finished = true;
+						return false;
+					}
+				}
+			} catch ( IOException e ) {
+				aborted = true;
+				throw e;
+			}
+			return true;
 		}
 
-		final List<String> fieldList = getCSVFields(row, fieldOrder);
-		final String[] fields = fieldList.toArray(new String[fieldList.size()]);
+		@Override
+		public String encodeChunk(List<Object> rows) throws IOException {
+			final StringWriter buf = new StringWriter(rows.size() * 64);
+			final ICsvListWriter chunk = new CsvListWriter(buf, CsvPreference.EXCEL_PREFERENCE);
+			final CsvRowEncoder chunkEncoder = new CsvRowEncoder(fields);
+			for ( Object row : rows ) {
+				chunkEncoder.writeRow(chunk, row);
+			}
+			chunk.close();
+			return buf.toString();
+		}
 
-		final ICsvMapWriter writer = new CsvMapWriter(response.getWriter(),
-				CsvPreference.EXCEL_PREFERENCE);
+		@Override
+		public boolean writeChunk(String chunk, int index) throws IOException {
+			out.write(chunk);
+			if ( flushRowCount > 0 ) {
+				out.flush();
+			}
+			if ( out.checkError() ) {
+				// the servlet writer swallows IOException, so treat as client abort
+				aborted = true;
+				return false;
+			}
+			return true;
+		}
 
-		try {
-			// output header
-			if ( true ) { // TODO make configurable property
-				Map<String, String> headerMap = new HashMap<String, String>(fields.length);
-				for ( String field : fields ) {
-					headerMap.put(field, field);
+		private void finish() throws IOException {
+			finished = true;
+			if ( chunkWriter != null ) {
+				chunkWriter.finish();
+			}
+			if ( writer != null ) {
+				try {
+					writer.flush();
+				} catch ( IOException e ) {
+					aborted = true;
+					throw e;
+				}
+			}
+		}
+
+		private void close() {
+			finished = true;
+			if ( chunkWriter != null ) {
+				chunkWriter.cancel();
+				chunkWriter = null;
+			}
+			if ( writer != null ) {
+				try {
+					writer.close();
+				} catch ( IOException e ) {
+					// ignore, the client has gone away
 				}
-				writeCSV(writer, fields, headerMap);
+				writer = null;
 			}
+		}
+
+	}
 
-			// output first row
-			writeCSV(writer, fields, row);
+	/**
+	 * Encodes rows as CSV values for a fixed list of fields.
+	 * 
+	 * <p>
+	 * Rows are normally all of the same class, so the bean properties for the
+	 * last class are cached. Fields the class does not have a property for are
+	 * written as empty values. This class is <b>not</b> thread-safe.
+	 * </p>
+	 */
+	private final class CsvRowEncoder {
 
-			// output remainder rows
-			while ( rowIterator.hasNext() ) {
-				row = rowIterator.next();
-				writeCSV(writer, fields, row);
+		private final String[] fields;
+		private final Object[] values;
+		private Class<?> beanClass;
+		private JavaBeanWritePlan.Property[] beanProperties;
+
+		private CsvRowEncoder(String[] fields) {
+			super();
+			this.fields = fields;
+			this.values = new Object[fields.length];
+		}
+
+		private void writeRow(ICsvListWriter writer, Object row) throws IOException {
+			if ( row == null ) {
+				return;
+			}
+			if ( !(row instanceof Map) && getPropertySerializerRegistrar() != null ) {
+				// try whole-bean serialization first
+				row = getPropertySerializerRegistrar().serializeProperty("row", row.getClass(), row,
+						row);
+				if ( row == null ) {
+					return;
+				}
+			}
+			if ( row instanceof Map ) {
+				Map<?, ?> map = (Map<?, ?>) row;
+				for ( int i = 0; i < fields.length; i++ ) {
+					values[i] = map.get(fields[i]);
+				}
+			} else {
+				final JavaBeanWritePlan.Property[] props = getBeanProperties(row.getClass());
+				for ( int i = 0; i < fields.length; i++ ) {
+					values[i] = (props[i] == null ? null : getBeanPropertyValue(props[i], row));
+				}
+			}
+			writer.write(values);
+		}
+
+		private JavaBeanWritePlan.Property[] getBeanProperties(Class<?> clazz) {
+			if ( clazz != beanClass ) {
+				Map<String, JavaBeanWritePlan.Property> byName = new HashMap<String, JavaBeanWritePlan.Property>();
+				for ( JavaBeanWritePlan.Property prop : getJavaBeanWritePlan(clazz).getProperties() ) {
+					byName.put(prop.getName(), prop);
+				}
+				JavaBeanWritePlan.Property[] props = new JavaBeanWritePlan.Property[fields.length];
+				for ( int i = 0; i < fields.length; i++ ) {
+					props[i] = byName.get(fields[i]);
+				}
+				beanClass = clazz;
+				beanProperties = props;
+			}
+			return beanProperties;
+		}
+
+	}
+
+	private Object getBeanPropertyValue(JavaBeanWritePlan.Property prop, Object bean) {
+		Object val = prop.getValue(bean);
+		if ( val != null ) {
+			if ( getPropertySerializerRegistrar() != null ) {
+				val = getPropertySerializerRegistrar().serializeProperty(prop.getName(), val.getClass(),
+						bean, val);
+			}
+			if ( val instanceof Enum<?> || getJavaBeanTreatAsStringValues() != null && val != null
+					&& getJavaBeanTreatAsStringValues().contains(val.getClass()) ) {
+				val = val.toString();
+			}
+		}
+		return val;
+	}
+
+	private static void closeQuietly(Object o) {
+		if ( o instanceof Stream ) {
+			((Stream<?>) o).close();
+		} else if ( o instanceof Closeable ) {
+			try {
+				((Closeable) o).close();
+			} catch ( IOException e ) {
+				// ignore
 			}
-		} finally {
-			writer.flush();
-			writer.close();
 		}
 	}
 
@@ -183,23 +441,15 @@ public class SimpleCsvView extends AbstractView {
 					}
 				}
 			}
-			BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(row);
-			PropertyDescriptor[] props = wrapper.getPropertyDescriptors();
 			Set<String> resultSet = new LinkedHashSet<String>();
-			for ( PropertyDescriptor prop : props ) {
+			for ( JavaBeanWritePlan.Property prop : getJavaBeanWritePlan(row.getClass())
+					.getProperties() ) {
 				String name = prop.getName();
 				if ( getJavaBeanIgnoreProperties() != null
 						&& getJavaBeanIgnoreProperties().contains(name) ) {
 					continue;
 				}
-				if ( wrapper.isReadableProperty(name) ) {
-					// test for SerializeIgnore
-					Method getter = prop.getReadMethod();
-					if ( getter != null && getter.isAnnotationPresent(SerializeIgnore.class) ) {
-						continue;
-					}
-					resultSet.add(name);
-				}
+				resultSet.add(name);
 			}
 			if ( fieldOrder != null && fieldOrder.size() > 0 ) {
 				for ( String key : fieldOrder ) {
@@ -215,53 +465,6 @@ public class SimpleCsvView extends AbstractView {
 		return result;
 	}
 
-	private void writeCSV(ICsvMapWriter writer, String[] fields, Object row) throws IOException {
-		if ( row instanceof Map ) {
-			@SuppressWarnings("unchecked")
-			Map<String, ?> map = (Map<String, ?>) row;
-			writer.write(map, fields);
-		} else if ( row != null ) {
-			Map<String, Object> map = new HashMap<String, Object>(fields.length);
-
-			// use bean properties
-			if ( getPropertySerializerRegistrar() != null ) {
-				// try whole-bean serialization first
-				row = getPropertySerializerRegistrar()
-						.serializeProperty("row", row.getClass(), row, row);
-				if ( row == null ) {
-					return;
-				}
-			}
-
-			BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(row);
-			for ( String name : fields ) {
-				Object val = wrapper.getPropertyValue(name);
-				if ( val != null ) {
-					if ( getPropertySerializerRegistrar() != null ) {
-						val = getPropertySerializerRegistrar().serializeProperty(name, val.getClass(),
-								row, val);
-					} else {
-						// Spring does not apply PropertyEditors on read methods, so manually handle
-						PropertyEditor editor = wrapper.findCustomEditor(null, name);
-						if ( editor != null ) {
-							editor.setValue(val);
-							val = editor.getAsText();
-						}
-					}
-					if ( val instanceof Enum<?> || getJavaBeanTreatAsStringValues() != null
-							&& getJavaBeanTreatAsStringValues().contains(val.getClass()) ) {
-						val = val.toString();
-					}
-					if ( val != null ) {
-						map.put(name, val);
-					}
-				}
-			}
-
-			writer.write(map, fields);
-		}
-	}
-
 	public String getDataModelKey() {
 		return dataModelKey;
 	}
@@ -278,4 +481,34 @@ public class SimpleCsvView extends AbstractView {
 		this.fieldOrderKey = fieldOrderKey;
 	}
 
+	public int getFlushRowCount() {
+		return flushRowCount;
+	}
+
+	/**
+	 * Set the number of rows after which to flush the response.
+	 * 
+	 * @param flushRowCount
+	 *        the flush row count, or {@code 0} to only flush at the end
+	 * @since 1.1
+	 */
+	public void setFlushRowCount(int flushRowCount) {
+		this.flushRowCount = flushRowCount;
+	}
+
+	public boolean isIncludeHeader() {
+		return includeHeader;
+	}
+
+	/**
+	 * Set the flag to output a header row.
+	 * 
+	 * @param includeHeader
+	 *        {@literal true} to output a header row of the field names
+	 * @since 1.2
+	 */
+	public void setIncludeHeader(boolean includeHeader) {
+		this.includeHeader = includeHeader;
+	}
+
 }
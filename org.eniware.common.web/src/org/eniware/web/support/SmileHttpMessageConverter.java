@@ -0,0 +1,65 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.web.support;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.Assert;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * {@link HttpMessageConverter} that reads and writes Smile binary JSON
+ * documents, using the {@link #SMILE_MEDIA_TYPE} media type.
+ * 
+ * <p>
+ * The configured {@link ObjectMapper} must use a {@link SmileFactory}, for
+ * example one created by
+ * {@link org.eniware.util.ObjectMapperFactoryBean#createSmileObjectMapper()} so
+ * it shares the configuration of the application's JSON mapper.
+ * </p>
+ * 
+ * @version 1.0
+ * @since 1.15
+ */
+public class SmileHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+	/** The Smile media type. */
+	public static final MediaType SMILE_MEDIA_TYPE = new MediaType("application", "x-jackson-smile");
+
+	/**
+	 * Default constructor.
+	 * 
+	 * <p>
+	 * This uses a new, unconfigured Smile mapper.
+	 * </p>
+	 */
+	public SmileHttpMessageConverter() {
+		this(new ObjectMapper(new SmileFactory()));
+	}
+
+	/**
+	 * Construct with a mapper.
+	 * 
+	 * @param objectMapper
+	 *        the mapper to use; must use a {@link SmileFactory}
+	 */
+	public SmileHttpMessageConverter(ObjectMapper objectMapper) {
+		super(objectMapper, SMILE_MEDIA_TYPE);
+		Assert.isInstanceOf(SmileFactory.class, objectMapper.getFactory(),
+				"SmileFactory required");
+	}
+
+	@Override
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		Assert.isInstanceOf(SmileFactory.class, objectMapper.getFactory(),
+				"SmileFactory required");
+		super.setObjectMapper(objectMapper);
+	}
+
+}
@@ -0,0 +1,131 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * {@link GeneralDatumSamples} that stores instantaneous and accumulating values
+ * in {@link CompactSampleMap} instances.
+ *
+ * <p>
+ * This class is API compatible with {@link GeneralDatumSamples}: any map passed
+ * to {@link #setInstantaneous(Map)} or {@link #setAccumulating(Map)} (including
+ * via JSON deserialization of the {@code i} and {@code a} properties) is copied
+ * into a compact map, and {@link #getI()} and {@link #getA()} return those
+ * compact maps. Tags are likewise stored in a {@link TagBitSet}.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+@JsonPropertyOrder({ "i", "a", "s", "t" })
+public class CompactGeneralDatumSamples extends GeneralDatumSamples implements Serializable {
+
+	private static final long serialVersionUID = -4129406744506437113L;
+
+	/**
+	 * Default constructor.
+	 */
+	public CompactGeneralDatumSamples() {
+		super();
+	}
+
+	/**
+	 * Construct with values.
+	 *
+	 * @param instantaneous
+	 *        the instantaneous data
+	 * @param accumulating
+	 *        the accumulating data
+	 * @param status
+	 *        the status data
+	 */
+	public CompactGeneralDatumSamples(Map<String, Number> instantaneous,
+			Map<String, Number> accumulating, Map<String, Object> status) {
+		super();
+		setInstantaneous(instantaneous);
+		setAccumulating(accumulating);
+		setStatus(status);
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param other
+	 *        the samples to copy
+	 */
+	public CompactGeneralDatumSamples(GeneralDatumSamples other) {
+		this(other.getInstantaneous(), other.getAccumulating(), null);
+		if ( other.getStatus() != null ) {
+			setStatus(new LinkedHashMap<String, Object>(other.getStatus()));
+		}
+		if ( other.getTags() != null ) {
+			setTags(new TagBitSet(other.getTags()));
+		}
+	}
+
+	@Override
+	protected Map<String, Number> createNumberSampleMap() {
+		return new CompactSampleMap();
+	}
+
+	private static Map<String, Number> compact(Map<String, Number> map) {
+		if ( map == null || map instanceof CompactSampleMap ) {
+			return map;
+		}
+		return new CompactSampleMap(map);
+	}
+
+	@Override
+	public void setInstantaneous(Map<String, Number> instantaneous) {
+		super.setInstantaneous(compact(instantaneous));
+	}
+
+	@Override
+	public void setAccumulating(Map<String, Number> accumulating) {
+		super.setAccumulating(compact(accumulating));
+	}
+
+	@Override
+	protected Set<String> createTagSet() {
+		return new TagBitSet();
+	}
+
+	/**
+	 * Set the tags.
+	 *
+	 * <p>
+	 * Sets other than {@link TagBitSet}, such as those bound from JSON, are
+	 * copied into a {@link TagBitSet} without adding their tags to the tag
+	 * dictionary.
+	 * </p>
+	 *
+	 * @param tags
+	 *        the tags to set
+	 */
+	@Override
+	public void setTags(Set<String> tags) {
+		if ( tags == null || tags instanceof TagBitSet ) {
+			super.setTags(tags);
+			return;
+		}
+		TagBitSet set = new TagBitSet();
+		for ( String tag : tags ) {
+			if ( tag != null ) {
+				set.add(tag, false);
+			}
+		}
+		super.setTags(set);
+	}
+
+}
@@ -0,0 +1,559 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A compact {@link Map} of numeric sample values, backed by primitive arrays.
+ *
+ * <p>
+ * Property names are canonicalized via
+ * {@link GeneralDatumSupport#getPropertyNameDictionary()} and held in a single
+ * key array, while values are held as raw {@code long} bits in a parallel array
+ * along with a type code so the original {@link Number} type can be
+ * reconstructed on access. This avoids a boxed value plus map entry per sample
+ * value. {@link Integer}, {@link Long}, {@link Float}, {@link Double}, and
+ * {@link BigDecimal} values whose unscaled value fits in a {@code long} are
+ * stored in primitive form; any other {@link Number} is stored as-is.
+ * </p>
+ *
+ * <p>
+ * Iteration order is insertion order, the same as {@link java.util.LinkedHashMap}.
+ * Lookups are a linear scan of the keys, which is faster than hashing for the
+ * handful of properties a typical datum has. This class is <b>not</b>
+ * thread-safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class CompactSampleMap extends AbstractMap<String, Number> implements Serializable {
+
+	private static final long serialVersionUID = -6093245862870462178L;
+
+	private static final byte TYPE_INTEGER = 1;
+	private static final byte TYPE_LONG = 2;
+	private static final byte TYPE_FLOAT = 3;
+	private static final byte TYPE_DOUBLE = 4;
+	private static final byte TYPE_DECIMAL = 5;
+	private static final byte TYPE_OTHER = 6;
+
+	private static final int DEFAULT_CAPACITY = 4;
+
+	// powers of ten exactly representable as a double
+	private static final double[] DOUBLE_10_POW = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+			1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// largest magnitude long exactly representable as a double
+	private static final long MAX_EXACT_DOUBLE_LONG = 1L << 52;
+
+	private static final long[] LONG_10_POW = { 1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L,
+			10000000L, 100000000L, 1000000000L, 10000000000L, 100000000000L, 1000000000000L,
+			10000000000000L, 100000000000000L, 1000000000000000L, 10000000000000000L,
+			100000000000000000L, 1000000000000000000L };
+
+	private String[] keys;
+	private long[] values;
+	private byte[] types;
+	private byte[] scales;
+	private Number[] others;
+	private int size;
+	private transient int modCount;
+	private transient Set<Map.Entry<String, Number>> entrySet;
+
+	/**
+	 * Default constructor.
+	 */
+	public CompactSampleMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct with an initial capacity.
+	 *
+	 * @param capacity
+	 *        the initial number of properties to allocate space for
+	 */
+	public CompactSampleMap(int capacity) {
+		super();
+		if ( capacity < 1 ) {
+			capacity = 1;
+		}
+		keys = new String[capacity];
+		values = new long[capacity];
+		types = new byte[capacity];
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param map
+	 *        the map to copy; {@literal null} keys and values are skipped
+	 */
+	public CompactSampleMap(Map<String, ? extends Number> map) {
+		this(map == null ? DEFAULT_CAPACITY : map.size());
+		if ( map != null ) {
+			for ( Map.Entry<String, ? extends Number> me : map.entrySet() ) {
+				if ( me.getKey() != null && me.getValue() != null ) {
+					put(me.getKey(), me.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the slot index of a key.
+	 *
+	 * @param key
+	 *        the key to look for
+	 * @return the index, or {@literal -1} if not found
+	 */
+	protected int indexOf(Object key) {
+		if ( key == null ) {
+			return -1;
+		}
+		final String[] k = keys;
+		final int len = size;
+		for ( int i = 0; i < len; i++ ) {
+			if ( k[i] == key ) {
+				return i;
+			}
+		}
+		for ( int i = 0; i < len; i++ ) {
+			if ( k[i].equals(key) ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if ( capacity <= keys.length ) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, keys.length + (keys.length >> 1) + 1);
+		String[] newKeys = new String[newCapacity];
+		System.arraycopy(keys, 0, newKeys, 0, size);
+		keys = newKeys;
+		long[] newValues = new long[newCapacity];
+		System.arraycopy(values, 0, newValues, 0, size);
+		values = newValues;
+		byte[] newTypes = new byte[newCapacity];
+		System.arraycopy(types, 0, newTypes, 0, size);
+		types = newTypes;
+		if ( scales != null ) {
+			byte[] newScales = new byte[newCapacity];
+			System.arraycopy(scales, 0, newScales, 0, size);
+			scales = newScales;
+		}
+		if ( others != null ) {
+			Number[] newOthers = new Number[newCapacity];
+			System.arraycopy(others, 0, newOthers, 0, size);
+			others = newOthers;
+		}
+	}
+
+	private void store(int i, Number n) {
+		if ( others != null ) {
+			others[i] = null;
+		}
+		if ( n instanceof Integer ) {
+			types[i] = TYPE_INTEGER;
+			values[i] = n.intValue();
+		} else if ( n instanceof Long ) {
+			types[i] = TYPE_LONG;
+			values[i] = n.longValue();
+		} else if ( n instanceof Float ) {
+			types[i] = TYPE_FLOAT;
+			values[i] = Float.floatToRawIntBits(n.floatValue());
+		} else if ( n instanceof Double ) {
+			types[i] = TYPE_DOUBLE;
+			values[i] = Double.doubleToRawLongBits(n.doubleValue());
+		} else if ( n.getClass() == BigDecimal.class && storeDecimal(i, (BigDecimal) n) ) {
+			types[i] = TYPE_DECIMAL;
+		} else {
+			if ( others == null ) {
+				others = new Number[keys.length];
+			}
+			types[i] = TYPE_OTHER;
+			values[i] = 0;
+			others[i] = n;
+		}
+	}
+
+	private boolean storeDecimal(int i, BigDecimal d) {
+		final int scale = d.scale();
+		if ( scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE ) {
+			return false;
+		}
+		BigInteger unscaled = d.unscaledValue();
+		if ( unscaled.bitLength() > 63 ) {
+			return false;
+		}
+		if ( scales == null ) {
+			scales = new byte[keys.length];
+		}
+		values[i] = unscaled.longValue();
+		scales[i] = (byte) scale;
+		return true;
+	}
+
+	/**
+	 * Reconstruct the {@link Number} stored at a given slot.
+	 *
+	 * @param i
+	 *        the slot index
+	 * @return the number
+	 */
+	protected Number valueAt(int i) {
+		final long v = values[i];
+		switch (types[i]) {
+			case TYPE_INTEGER:
+				return Integer.valueOf((int) v);
+
+			case TYPE_LONG:
+				return Long.valueOf(v);
+
+			case TYPE_FLOAT:
+				return Float.valueOf(Float.intBitsToFloat((int) v));
+
+			case TYPE_DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(v));
+
+			case TYPE_DECIMAL:
+				return BigDecimal.valueOf(v, scales[i]);
+
+			default:
+				return others[i];
+		}
+	}
+
+	/**
+	 * Get a value as a primitive {@code double}.
+	 *
+	 * <p>
+	 * This method does not allocate any objects for values stored in primitive
+	 * form, apart from decimal values that cannot be converted exactly without
+	 * going through {@link BigDecimal#doubleValue()}.
+	 * </p>
+	 *
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not present
+	 * @return the value
+	 */
+	public double getDoubleValue(String key, double defaultValue) {
+		final int i = indexOf(key);
+		if ( i < 0 ) {
+			return defaultValue;
+		}
+		final long v = values[i];
+		switch (types[i]) {
+			case TYPE_INTEGER:
+			case TYPE_LONG:
+				return v;
+
+			case TYPE_FLOAT:
+				return Float.intBitsToFloat((int) v);
+
+			case TYPE_DOUBLE:
+				return Double.longBitsToDouble(v);
+
+			case TYPE_DECIMAL: {
+				final int scale = scales[i];
+				if ( scale >= 0 && scale < DOUBLE_10_POW.length && v < MAX_EXACT_DOUBLE_LONG
+						&& v > -MAX_EXACT_DOUBLE_LONG ) {
+					return (v / DOUBLE_10_POW[scale]);
+				}
+				return BigDecimal.valueOf(v, scale).doubleValue();
+			}
+
+			default:
+				return others[i].doubleValue();
+		}
+	}
+
+	/**
+	 * Get a value as a primitive {@code long}.
+	 *
+	 * <p>
+	 * Floating point and decimal values are truncated, as with
+	 * {@link Number#longValue()}. This method does not allocate any objects for
+	 * values stored in primitive form, apart from decimal values with a
+	 * negative or very large scale that must go through
+	 * {@link BigDecimal#longValue()}.
+	 * </p>
+	 *
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not present
+	 * @return the value
+	 */
+	public long getLongValue(String key, long defaultValue) {
+		final int i = indexOf(key);
+		if ( i < 0 ) {
+			return defaultValue;
+		}
+		final long v = values[i];
+		switch (types[i]) {
+			case TYPE_INTEGER:
+			case TYPE_LONG:
+				return v;
+
+			case TYPE_FLOAT:
+				return (long) Float.intBitsToFloat((int) v);
+
+			case TYPE_DOUBLE:
+				return (long) Double.longBitsToDouble(v);
+
+			case TYPE_DECIMAL: {
+				final int scale = scales[i];
+				if ( scale >= 0 && scale < LONG_10_POW.length ) {
+					return (v / LONG_10_POW[scale]);
+				}
+				return BigDecimal.valueOf(v, scale).longValue();
+			}
+
+			default:
+				return others[i].longValue();
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Number get(Object key) {
+		int i = indexOf(key);
+		return (i < 0 ? null : valueAt(i));
+	}
+
+	/**
+	 * Put a value into the map.
+	 *
+	 * <p>
+	 * New keys are replaced by their canonical instance from
+	 * {@link GeneralDatumSupport#getPropertyNameDictionary()} when present, so
+	 * repeated property names share a single instance across maps. Keys are
+	 * never added to the dictionary here, as maps are also populated from
+	 * untrusted input; the sample {@code put} methods add their keys first.
+	 * </p>
+	 *
+	 * @param key
+	 *        the key; must not be {@literal null}
+	 * @param value
+	 *        the value; must not be {@literal null}
+	 * @return the previous value, or {@literal null} if there was none
+	 * @throws IllegalArgumentException
+	 *         if {@code key} or {@code value} is {@literal null}
+	 */
+	@Override
+	public Number put(String key, Number value) {
+		if ( key == null || value == null ) {
+			throw new IllegalArgumentException("Null keys and values are not supported.");
+		}
+		int i = indexOf(key);
+		Number old = null;
+		if ( i < 0 ) {
+			ensureCapacity(size + 1);
+			i = size;
+			keys[i] = GeneralDatumSupport.existingPropertyName(key);
+			size++;
+			modCount++;
+		} else {
+			old = valueAt(i);
+		}
+		store(i, value);
+		return old;
+	}
+
+	@Override
+	public Number remove(Object key) {
+		int i = indexOf(key);
+		if ( i < 0 ) {
+			return null;
+		}
+		Number old = valueAt(i);
+		removeAt(i);
+		return old;
+	}
+
+	private void removeAt(int i) {
+		final int moved = size - i - 1;
+		if ( moved > 0 ) {
+			System.arraycopy(keys, i + 1, keys, i, moved);
+			System.arraycopy(values, i + 1, values, i, moved);
+			System.arraycopy(types, i + 1, types, i, moved);
+			if ( scales != null ) {
+				System.arraycopy(scales, i + 1, scales, i, moved);
+			}
+			if ( others != null ) {
+				System.arraycopy(others, i + 1, others, i, moved);
+			}
+		}
+		size--;
+		keys[size] = null;
+		if ( others != null ) {
+			others[size] = null;
+		}
+		modCount++;
+	}
+
+	@Override
+	public void clear() {
+		for ( int i = 0; i < size; i++ ) {
+			keys[i] = null;
+			if ( others != null ) {
+				others[i] = null;
+			}
+		}
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Number>> entrySet() {
+		Set<Map.Entry<String, Number>> es = entrySet;
+		if ( es == null ) {
+			es = new EntrySet();
+			entrySet = es;
+		}
+		return es;
+	}
+
+	private final class EntrySet extends AbstractSet<Map.Entry<String, Number>> {
+
+		@Override
+		public Iterator<Map.Entry<String, Number>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void clear() {
+			CompactSampleMap.this.clear();
+		}
+
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<String, Number>> {
+
+		private int next = 0;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+
+		@Override
+		public Map.Entry<String, Number> next() {
+			if ( modCount != expectedModCount ) {
+				throw new ConcurrentModificationException();
+			}
+			if ( next >= size ) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next++;
+			return new Entry(keys[last]);
+		}
+
+		@Override
+		public void remove() {
+			if ( last < 0 ) {
+				throw new IllegalStateException();
+			}
+			if ( modCount != expectedModCount ) {
+				throw new ConcurrentModificationException();
+			}
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+
+	}
+
+	private final class Entry implements Map.Entry<String, Number> {
+
+		private final String key;
+
+		private Entry(String key) {
+			super();
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+
+		@Override
+		public Number getValue() {
+			return get(key);
+		}
+
+		@Override
+		public Number setValue(Number value) {
+			return put(key, value);
+		}
+
+		@Override
+		public int hashCode() {
+			Number v = getValue();
+			return key.hashCode() ^ (v == null ? 0 : v.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ( !(obj instanceof Map.Entry) ) {
+				return false;
+			}
+			Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+			Number v = getValue();
+			return key.equals(other.getKey())
+					&& (v == null ? other.getValue() == null : v.equals(other.getValue()));
+		}
+
+		@Override
+		public String toString() {
+			return key + "=" + getValue();
+		}
+
+	}
+
+}
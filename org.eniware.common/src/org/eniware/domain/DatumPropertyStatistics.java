@@ -0,0 +1,172 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.Serializable;
+
+/**
+ * Running statistics for a single numeric datum property.
+ *
+ * <p>
+ * The mean and variance are maintained with Welford's online algorithm, and
+ * two sets of statistics can be combined with
+ * {@link #merge(DatumPropertyStatistics)} using the pairwise update of Chan et
+ * al. Merging the same partial results in the same order always produces the
+ * same result.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class DatumPropertyStatistics implements Serializable {
+
+	private static final long serialVersionUID = 2829410497839712745L;
+
+	private long count;
+	private double sum;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+	private double mean;
+	private double m2;
+
+	/**
+	 * Add a value.
+	 *
+	 * @param value
+	 *        the value to add
+	 */
+	public void add(double value) {
+		if ( count == 0 ) {
+			min = value;
+			max = value;
+		} else if ( value < min ) {
+			min = value;
+		} else if ( value > max ) {
+			max = value;
+		}
+		count++;
+		sum += value;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+	}
+
+	/**
+	 * Merge another set of statistics into this one.
+	 *
+	 * @param other
+	 *        the statistics to merge
+	 */
+	public void merge(DatumPropertyStatistics other) {
+		if ( other == null || other.count == 0 ) {
+			return;
+		}
+		if ( count == 0 ) {
+			count = other.count;
+			sum = other.sum;
+			min = other.min;
+			max = other.max;
+			mean = other.mean;
+			m2 = other.m2;
+			return;
+		}
+		final long n = count + other.count;
+		final double delta = other.mean - mean;
+		mean += delta * other.count / n;
+		m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+		count = n;
+		sum += other.sum;
+		if ( other.min < min ) {
+			min = other.min;
+		}
+		if ( other.max > max ) {
+			max = other.max;
+		}
+	}
+
+	/**
+	 * Get the number of values added.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the sum of all values.
+	 *
+	 * @return the sum
+	 */
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * Get the minimum value.
+	 *
+	 * @return the minimum, or {@link Double#NaN} if no values added
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Get the maximum value.
+	 *
+	 * @return the maximum, or {@link Double#NaN} if no values added
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Get the mean value.
+	 *
+	 * @return the mean, or {@link Double#NaN} if no values added
+	 */
+	public double getMean() {
+		return (count > 0 ? mean : Double.NaN);
+	}
+
+	/**
+	 * Get the sample variance.
+	 *
+	 * @return the sample variance, or {@link Double#NaN} if fewer than two
+	 *         values added
+	 */
+	public double getVariance() {
+		return (count > 1 ? m2 / (count - 1) : Double.NaN);
+	}
+
+	/**
+	 * Get the population variance.
+	 *
+	 * @return the population variance, or {@link Double#NaN} if no values
+	 *         added
+	 */
+	public double getPopulationVariance() {
+		return (count > 0 ? m2 / count : Double.NaN);
+	}
+
+	/**
+	 * Get the sample standard deviation.
+	 *
+	 * @return the standard deviation, or {@link Double#NaN} if fewer than two
+	 *         values added
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public String toString() {
+		return "DatumPropertyStatistics{count=" + count + ",sum=" + sum + ",min=" + min + ",max=" + max
+				+ ",mean=" + getMean() + ",variance=" + getVariance() + '}';
+	}
+
+}
@@ -0,0 +1,35 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+/**
+ * API for receiving rolled-up datum samples for a time interval.
+ *
+ * @version 1.0
+ * @since 1.42
+ * @see GeneralDatumSamplesAccumulator
+ */
+public interface DatumRollupHandler {
+
+	/**
+	 * Handle a rollup for a single source and interval.
+	 *
+	 * @param sourceId
+	 *        the source ID
+	 * @param intervalStart
+	 *        the interval start date, in milliseconds since the epoch
+	 *        (inclusive)
+	 * @param intervalEnd
+	 *        the interval end date, in milliseconds since the epoch
+	 *        (exclusive)
+	 * @param samples
+	 *        the rolled-up samples
+	 */
+	void handleRollup(String sourceId, long intervalStart, long intervalEnd,
+			GeneralDatumSamples samples);
+
+}
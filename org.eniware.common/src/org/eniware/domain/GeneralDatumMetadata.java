@@ -8,19 +8,22 @@ package org.eniware.domain;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.eniware.util.SerializeIgnore;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 /**
  * Metadata about general Edge datum streams of data.
  * 
- * @version 1.1
+ * @version 1.4
  */
 @JsonPropertyOrder({ "m", "pm", "t" })
 public class GeneralDatumMetadata extends GeneralDatumSupport implements Serializable {
@@ -30,6 +33,11 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 	private Map<String, Object> info;
 	private Map<String, Map<String, Object>> propertyInfo;
 
+	// copy-on-write state: maps shared with other instances must be copied before modification
+	private transient boolean infoShared;
+	private transient boolean propertyInfoShared;
+	private transient Set<String> sharedPropertyInfoKeys;
+
 	/**
 	 * Default constructor.
 	 */
@@ -39,17 +47,39 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 
 	/**
 	 * Copy constructor.
+	 * 
+	 * <p>
+	 * The info and property info maps are shared with {@code other} rather
+	 * than copied. Both instances copy a shared map, and only the affected
+	 * property info map within it, the first time they modify it, so copying is
+	 * cheap and modifications to either instance are never visible in the
+	 * other. {@code other} must not be modified concurrently with this
+	 * constructor.
+	 * </p>
+	 * 
+	 * @param other
+	 *        the metadata to copy
 	 */
 	public GeneralDatumMetadata(GeneralDatumMetadata other) {
 		super();
 		if ( other.getTags() != null ) {
 			setTags(new LinkedHashSet<String>(other.getTags()));
 		}
+		// snapshots never modify their maps, so are not marked as sharing them
+		final boolean otherMutable = !(other instanceof ImmutableGeneralDatumMetadata);
 		if ( other.info != null ) {
-			info = new LinkedHashMap<String, Object>(other.info);
+			info = other.info;
+			infoShared = true;
+			if ( otherMutable ) {
+				other.infoShared = true;
+			}
 		}
 		if ( other.propertyInfo != null ) {
-			propertyInfo = new LinkedHashMap<String, Map<String, Object>>(other.propertyInfo);
+			propertyInfo = other.propertyInfo;
+			propertyInfoShared = true;
+			if ( otherMutable ) {
+				other.propertyInfoShared = true;
+			}
 		}
 	}
 
@@ -58,6 +88,12 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 	 * this one. Existing values will <b>not</b> be replaced by values in the
 	 * provided instance, only new values will be merged.
 	 * 
+	 * <p>
+	 * Maps that do not exist in this instance are shared with {@code meta}
+	 * rather than copied, and values that are already equal are left alone, so
+	 * only the maps that actually change are copied.
+	 * </p>
+	 * 
 	 * @param meta
 	 *        the metadata to merge into this object
 	 * @param replace
@@ -71,29 +107,50 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 				addTag(tag);
 			}
 		}
-		if ( meta.getInfo() != null ) {
-			for ( Map.Entry<String, Object> me : meta.getInfo().entrySet() ) {
-				// only overwrite keys, if replace is true
-				if ( replace || getInfo() == null || getInfo().containsKey(me.getKey()) == false ) {
-					putInfoValue(me.getKey(), me.getValue());
+		// snapshots never modify their maps, so are not marked as sharing them
+		final boolean metaMutable = !(meta instanceof ImmutableGeneralDatumMetadata);
+		if ( meta.info != null ) {
+			if ( info == null ) {
+				info = meta.info;
+				infoShared = true;
+				if ( metaMutable ) {
+					meta.infoShared = true;
+				}
+			} else {
+				for ( Map.Entry<String, Object> me : meta.info.entrySet() ) {
+					// only overwrite keys, if replace is true
+					if ( replace || info.containsKey(me.getKey()) == false ) {
+						putInfoValue(me.getKey(), me.getValue());
+					}
 				}
 			}
 		}
-		if ( meta.getPropertyInfo() != null ) {
-			Map<String, Map<String, Object>> gdmPropertyMeta = getPropertyInfo();
-			if ( gdmPropertyMeta == null ) {
-				setPropertyInfo(meta.getPropertyInfo());
+		if ( meta.propertyInfo != null ) {
+			if ( propertyInfo == null ) {
+				propertyInfo = meta.propertyInfo;
+				propertyInfoShared = true;
+				if ( metaMutable ) {
+					meta.propertyInfoShared = true;
+				}
 			} else {
-				for ( Map.Entry<String, Map<String, Object>> me : meta.getPropertyInfo().entrySet() ) {
-					if ( gdmPropertyMeta.get(me.getKey()) == null ) {
-						gdmPropertyMeta.put(me.getKey(), me.getValue());
-					} else {
+				for ( Map.Entry<String, Map<String, Object>> me : meta.propertyInfo.entrySet() ) {
+					Map<String, Object> curr = propertyInfo.get(me.getKey());
+					if ( curr == null ) {
+						if ( me.getValue() != null ) {
+							ownPropertyInfo();
+							propertyInfo.put(existingPropertyName(me.getKey()), me.getValue());
+							markPropertyInfoShared(me.getKey());
+							if ( metaMutable ) {
+								meta.markPropertyInfoShared(me.getKey());
+							}
+						}
+					} else if ( me.getValue() != null ) {
 						for ( Map.Entry<String, Object> pme : me.getValue().entrySet() ) {
-							if ( replace == false
-									&& gdmPropertyMeta.get(me.getKey()).containsKey(pme.getKey()) ) {
+							if ( replace == false && curr.containsKey(pme.getKey()) ) {
 								continue;
 							}
 							putInfoValue(me.getKey(), pme.getKey(), pme.getValue());
+							curr = propertyInfo.get(me.getKey());
 						}
 					}
 				}
@@ -101,6 +158,133 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 		}
 	}
 
+	/**
+	 * Take ownership of the info map, copying it if shared.
+	 */
+	private void ownInfo() {
+		if ( infoShared ) {
+			if ( info != null ) {
+				info = new LinkedHashMap<String, Object>(info);
+			}
+			infoShared = false;
+		}
+	}
+
+	/**
+	 * Take ownership of the top-level property info map, copying it if shared.
+	 * The nested property maps remain shared.
+	 */
+	private void ownPropertyInfo() {
+		if ( propertyInfoShared ) {
+			if ( propertyInfo != null ) {
+				propertyInfo = new LinkedHashMap<String, Map<String, Object>>(propertyInfo);
+				Set<String> shared = sharedPropertyInfoKeys;
+				if ( shared == null ) {
+					shared = new HashSet<String>(propertyInfo.keySet());
+					sharedPropertyInfoKeys = shared;
+				} else {
+					shared.addAll(propertyInfo.keySet());
+				}
+			}
+			propertyInfoShared = false;
+		}
+	}
+
+	/**
+	 * Take ownership of a single property map, copying it if shared.
+	 * 
+	 * @param property
+	 *        the property name
+	 * @return the owned map, or {@literal null} if there is no such map
+	 */
+	private Map<String, Object> ownPropertyInfo(String property) {
+		ownPropertyInfo();
+		if ( propertyInfo == null ) {
+			return null;
+		}
+		Map<String, Object> m = propertyInfo.get(property);
+		if ( m != null && sharedPropertyInfoKeys != null && sharedPropertyInfoKeys.remove(property) ) {
+			m = new LinkedHashMap<String, Object>(m);
+			propertyInfo.put(property, m);
+		}
+		return m;
+	}
+
+	/**
+	 * Get the info map for sharing with another instance, marking it as shared
+	 * so this instance copies it before any further modification.
+	 * 
+	 * @return the info map
+	 */
+	Map<String, Object> shareInfo() {
+		if ( info != null ) {
+			infoShared = true;
+		}
+		return info;
+	}
+
+	/**
+	 * Get the property info map for sharing with another instance, marking it
+	 * as shared so this instance copies it before any further modification.
+	 * 
+	 * @return the property info map
+	 */
+	Map<String, Map<String, Object>> sharePropertyInfo() {
+		if ( propertyInfo != null ) {
+			propertyInfoShared = true;
+		}
+		return propertyInfo;
+	}
+
+	/**
+	 * Get the info map without taking ownership of it, for read-only use.
+	 * 
+	 * @return the info map
+	 */
+	Map<String, Object> infoForReading() {
+		return info;
+	}
+
+	/**
+	 * Get the property info map without taking ownership of it, for read-only
+	 * use.
+	 * 
+	 * @return the property info map
+	 */
+	Map<String, Map<String, Object>> propertyInfoForReading() {
+		return propertyInfo;
+	}
+
+	/**
+	 * Remove all metadata for a property from the {@link #getPropertyInfo()}
+	 * map.
+	 * 
+	 * @param property
+	 *        the property name to remove
+	 */
+	void removePropertyInfo(String property) {
+		if ( propertyInfo == null || !propertyInfo.containsKey(property) ) {
+			return;
+		}
+		ownPropertyInfo();
+		propertyInfo.remove(property);
+		if ( sharedPropertyInfoKeys != null ) {
+			sharedPropertyInfoKeys.remove(property);
+		}
+	}
+
+	private void markPropertyInfoShared(String property) {
+		if ( propertyInfoShared ) {
+			return;
+		}
+		Set<String> shared = sharedPropertyInfoKeys;
+		if ( shared == null ) {
+			shared = new HashSet<String>(4);
+			sharedPropertyInfoKeys = shared;
+		}
+		shared.add(property);
+	}
+
 	/**
 	 * Construct with values.
 	 * 
@@ -143,6 +327,13 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 			}
 			m = new LinkedHashMap<String, Object>(4);
 			info = m;
+			infoShared = false;
+		} else if ( value == null ? !m.containsKey(key) : value.equals(m.get(key)) ) {
+			// nothing changes, so avoid copying a shared map
+			return;
+		} else {
+			ownInfo();
+			m = info;
 		}
 		if ( value == null ) {
 			m.remove(key);
@@ -277,11 +468,13 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 	@JsonIgnore
 	@SerializeIgnore
 	public Map<String, Object> getInfo() {
+		ownInfo();
 		return info;
 	}
 
 	public void setInfo(Map<String, Object> info) {
 		this.info = info;
+		this.infoShared = false;
 	}
 
 	/**
@@ -312,11 +505,23 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 	@JsonIgnore
 	@SerializeIgnore
 	public Map<String, Map<String, Object>> getPropertyInfo() {
+		ownPropertyInfo();
+		if ( propertyInfo != null && sharedPropertyInfoKeys != null ) {
+			// the caller may modify any property map, so take ownership of them all
+			for ( Map.Entry<String, Map<String, Object>> me : propertyInfo.entrySet() ) {
+				if ( sharedPropertyInfoKeys.remove(me.getKey()) && me.getValue() != null ) {
+					me.setValue(new LinkedHashMap<String, Object>(me.getValue()));
+				}
+			}
+			sharedPropertyInfoKeys = null;
+		}
 		return propertyInfo;
 	}
 
 	public void setPropertyInfo(Map<String, Map<String, Object>> propertyInfo) {
 		this.propertyInfo = propertyInfo;
+		this.propertyInfoShared = false;
+		this.sharedPropertyInfoKeys = null;
 	}
 
 	/**
@@ -334,6 +539,7 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 	 * @param map
 	 *        the map to set
 	 */
+	@JsonDeserialize(keyUsing = PropertyNameKeyDeserializer.class)
 	public void setPm(Map<String, Map<String, Object>> map) {
 		setPropertyInfo(map);
 	}
@@ -357,14 +563,25 @@ public class GeneralDatumMetadata extends GeneralDatumSupport implements Seriali
 			}
 			pm = new LinkedHashMap<String, Map<String, Object>>(4);
 			propertyInfo = pm;
+			propertyInfoShared = false;
+			sharedPropertyInfoKeys = null;
 		}
 		Map<String, Object> m = pm.get(property);
 		if ( m == null ) {
 			if ( value == null ) {
 				return;
 			}
+			ownPropertyInfo();
+			if ( sharedPropertyInfoKeys != null ) {
+				sharedPropertyInfoKeys.remove(property);
+			}
 			m = new LinkedHashMap<String, Object>(4);
-			pm.put(property, m);
+			propertyInfo.put(canonicalPropertyName(property), m);
+		} else if ( value == null ? !m.containsKey(key) : value.equals(m.get(key)) ) {
+			// nothing changes, so avoid copying shared maps
+			return;
+		} else {
+			m = ownPropertyInfo(property);
 		}
 		if ( value == null ) {
 			m.remove(key);
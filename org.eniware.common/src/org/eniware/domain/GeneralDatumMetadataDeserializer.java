@@ -0,0 +1,92 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+/**
+ * Streaming deserializer for {@link GeneralDatumMetadata}.
+ *
+ * <p>
+ * The {@code m}, {@code pm}, and {@code t} properties are read token by token
+ * directly into the metadata. Property names (the top-level keys of
+ * {@code pm}) are canonicalized the same way as with the default Jackson
+ * binding, without adding new names to the property name dictionary. This
+ * deserializer is not registered by default; add it to an
+ * {@link com.fasterxml.jackson.databind.ObjectMapper}, for example via the
+ * {@code deserializers} property of
+ * {@link org.eniware.util.ObjectMapperFactoryBean}.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class GeneralDatumMetadataDeserializer
+		extends GeneralDatumSupportDeserializer<GeneralDatumMetadata> {
+
+	private static final long serialVersionUID = 7785185331409617934L;
+
+	/** A default instance. */
+	public static final GeneralDatumMetadataDeserializer INSTANCE = new GeneralDatumMetadataDeserializer(
+			false);
+
+	/** An instance that parses numbers as primitive values. */
+	public static final GeneralDatumMetadataDeserializer PRIMITIVE_NUMBERS_INSTANCE = new GeneralDatumMetadataDeserializer(
+			true);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param primitiveNumbers
+	 *        {@literal true} to parse numbers as primitive {@code double} and
+	 *        {@code long} values
+	 */
+	public GeneralDatumMetadataDeserializer(boolean primitiveNumbers) {
+		super(GeneralDatumMetadata.class, primitiveNumbers);
+	}
+
+	@Override
+	public GeneralDatumMetadata deserialize(JsonParser p, DeserializationContext ctxt)
+			throws IOException {
+		final GeneralDatumMetadata meta = new GeneralDatumMetadata();
+		for ( JsonToken t = startObject(p, ctxt); t == JsonToken.FIELD_NAME; t = p.nextToken() ) {
+			final String field = p.getCurrentName();
+			p.nextToken();
+			if ( "m".equals(field) ) {
+				meta.setInfo(readObjectMap(p, ctxt, false));
+			} else if ( "pm".equals(field) ) {
+				meta.setPropertyInfo(readPropertyInfo(p, ctxt));
+			} else if ( "t".equals(field) ) {
+				readTags(p, ctxt, meta);
+			} else {
+				ctxt.handleUnknownProperty(p, this, meta, field);
+			}
+		}
+		return meta;
+	}
+
+	private Map<String, Map<String, Object>> readPropertyInfo(JsonParser p,
+			DeserializationContext ctxt) throws IOException {
+		if ( p.getCurrentToken() == JsonToken.VALUE_NULL ) {
+			return null;
+		}
+		Map<String, Map<String, Object>> result = new LinkedHashMap<String, Map<String, Object>>(8);
+		for ( JsonToken t = startObject(p, ctxt); t == JsonToken.FIELD_NAME; t = p.nextToken() ) {
+			String name = GeneralDatumSupport.existingPropertyName(p.getCurrentName());
+			p.nextToken();
+			result.put(name, readObjectMap(p, ctxt, false));
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,357 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * The set of changes between two {@link GeneralDatumMetadata} instances.
+ *
+ * <p>
+ * Use {@link #diff(GeneralDatumMetadata, GeneralDatumMetadata)} to calculate
+ * the changes needed to turn one metadata instance into another, and
+ * {@link #apply(GeneralDatumMetadata)} to make those changes to a metadata
+ * instance. Only added, changed, and removed keys are included, so a diff is
+ * usually much smaller than the metadata itself. A diff serializes to JSON
+ * using these properties, all of which are omitted when empty:
+ * </p>
+ *
+ * <dl>
+ * <dt>m</dt>
+ * <dd>info values added or changed</dd>
+ * <dt>mr</dt>
+ * <dd>info keys removed</dd>
+ * <dt>pm</dt>
+ * <dd>property info values added or changed, by property</dd>
+ * <dt>pmr</dt>
+ * <dd>property info keys removed, by property; an empty set means the entire
+ * property was removed</dd>
+ * <dt>t</dt>
+ * <dd>tags added</dd>
+ * <dt>tr</dt>
+ * <dd>tags removed</dd>
+ * </dl>
+ *
+ * <p>
+ * Applying a diff only replaces values; it does not use the
+ * {@link GeneralDatumMetadata#merge(GeneralDatumMetadata, boolean)} rules.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+@JsonPropertyOrder({ "m", "mr", "pm", "pmr", "t", "tr" })
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class GeneralDatumMetadataDiff implements Serializable {
+
+	private static final long serialVersionUID = 5405213493431874271L;
+
+	private Map<String, Object> infoChanged;
+	private Set<String> infoRemoved;
+	private Map<String, Map<String, Object>> propertyInfoChanged;
+	private Map<String, Set<String>> propertyInfoRemoved;
+	private Set<String> tagsAdded;
+	private Set<String> tagsRemoved;
+
+	/**
+	 * Calculate the changes needed to turn one metadata instance into another.
+	 *
+	 * @param from
+	 *        the original metadata, or {@literal null} for no metadata
+	 * @param to
+	 *        the updated metadata, or {@literal null} for no metadata
+	 * @return the diff, never {@literal null}
+	 */
+	public static GeneralDatumMetadataDiff diff(GeneralDatumMetadata from, GeneralDatumMetadata to) {
+		GeneralDatumMetadataDiff diff = new GeneralDatumMetadataDiff();
+		Map<String, Object> fromInfo = (from != null ? from.infoForReading() : null);
+		Map<String, Object> toInfo = (to != null ? to.infoForReading() : null);
+		if ( fromInfo != toInfo ) {
+			diff.infoChanged = changes(fromInfo, toInfo);
+			diff.infoRemoved = removals(fromInfo, toInfo);
+		}
+
+		Map<String, Map<String, Object>> fromProps = (from != null ? from.propertyInfoForReading()
+				: null);
+		Map<String, Map<String, Object>> toProps = (to != null ? to.propertyInfoForReading() : null);
+		if ( fromProps != toProps ) {
+			if ( toProps != null ) {
+				for ( Map.Entry<String, Map<String, Object>> me : toProps.entrySet() ) {
+					Map<String, Object> fromProp = (fromProps != null ? fromProps.get(me.getKey())
+							: null);
+					if ( fromProp == me.getValue() ) {
+						continue;
+					}
+					Map<String, Object> changes = changes(fromProp, me.getValue());
+					if ( changes != null ) {
+						if ( diff.propertyInfoChanged == null ) {
+							diff.propertyInfoChanged = new LinkedHashMap<String, Map<String, Object>>(4);
+						}
+						diff.propertyInfoChanged.put(me.getKey(), changes);
+					}
+				}
+			}
+			if ( fromProps != null ) {
+				for ( Map.Entry<String, Map<String, Object>> me : fromProps.entrySet() ) {
+					Map<String, Object> toProp = (toProps != null ? toProps.get(me.getKey()) : null);
+					if ( toProp == me.getValue() ) {
+						continue;
+					}
+					Set<String> removals;
+					if ( toProp == null ) {
+						// an empty set removes the entire property
+						removals = new LinkedHashSet<String>(0);
+					} else {
+						removals = removals(me.getValue(), toProp);
+					}
+					if ( removals != null ) {
+						if ( diff.propertyInfoRemoved == null ) {
+							diff.propertyInfoRemoved = new LinkedHashMap<String, Set<String>>(4);
+						}
+						diff.propertyInfoRemoved.put(me.getKey(), removals);
+					}
+				}
+			}
+		}
+
+		Set<String> fromTags = (from != null ? from.getTags() : null);
+		Set<String> toTags = (to != null ? to.getTags() : null);
+		diff.tagsAdded = setDifference(toTags, fromTags);
+		diff.tagsRemoved = setDifference(fromTags, toTags);
+		return diff;
+	}
+
+	private static Map<String, Object> changes(Map<String, Object> from, Map<String, Object> to) {
+		if ( to == null ) {
+			return null;
+		}
+		Map<String, Object> result = null;
+		for ( Map.Entry<String, Object> me : to.entrySet() ) {
+			Object v = me.getValue();
+			if ( v == null ) {
+				continue;
+			}
+			if ( from != null && v.equals(from.get(me.getKey())) ) {
+				continue;
+			}
+			if ( result == null ) {
+				result = new LinkedHashMap<String, Object>(4);
+			}
+			result.put(me.getKey(), v);
+		}
+		return result;
+	}
+
+	private static Set<String> removals(Map<String, Object> from, Map<String, Object> to) {
+		if ( from == null ) {
+			return null;
+		}
+		Set<String> result = null;
+		for ( String key : from.keySet() ) {
+			if ( to == null || to.get(key) == null ) {
+				if ( result == null ) {
+					result = new LinkedHashSet<String>(4);
+				}
+				result.add(key);
+			}
+		}
+		return result;
+	}
+
+	private static Set<String> setDifference(Set<String> a, Set<String> b) {
+		if ( a == null ) {
+			return null;
+		}
+		Set<String> result = null;
+		for ( String s : a ) {
+			if ( b == null || !b.contains(s) ) {
+				if ( result == null ) {
+					result = new LinkedHashSet<String>(4);
+				}
+				result.add(s);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Apply the changes in this diff to a metadata instance.
+	 *
+	 * @param meta
+	 *        the metadata to change
+	 */
+	public void apply(GeneralDatumMetadata meta) {
+		if ( infoRemoved != null ) {
+			for ( String key : infoRemoved ) {
+				meta.putInfoValue(key, null);
+			}
+		}
+		if ( infoChanged != null ) {
+			for ( Map.Entry<String, Object> me : infoChanged.entrySet() ) {
+				meta.putInfoValue(me.getKey(), me.getValue());
+			}
+		}
+		if ( propertyInfoRemoved != null ) {
+			for ( Map.Entry<String, Set<String>> me : propertyInfoRemoved.entrySet() ) {
+				if ( me.getValue() == null || me.getValue().isEmpty() ) {
+					meta.removePropertyInfo(me.getKey());
+					continue;
+				}
+				for ( String key : me.getValue() ) {
+					meta.putInfoValue(me.getKey(), key, null);
+				}
+			}
+		}
+		if ( propertyInfoChanged != null ) {
+			for ( Map.Entry<String, Map<String, Object>> me : propertyInfoChanged.entrySet() ) {
+				if ( me.getValue() == null ) {
+					continue;
+				}
+				for ( Map.Entry<String, Object> pme : me.getValue().entrySet() ) {
+					meta.putInfoValue(me.getKey(), pme.getKey(), pme.getValue());
+				}
+			}
+		}
+		if ( tagsRemoved != null ) {
+			for ( String tag : tagsRemoved ) {
+				meta.removeTag(tag);
+			}
+		}
+		if ( tagsAdded != null ) {
+			for ( String tag : tagsAdded ) {
+				meta.addTag(tag);
+			}
+		}
+	}
+
+	/**
+	 * Test if this diff contains no changes.
+	 *
+	 * @return <em>true</em> if there are no changes
+	 */
+	@JsonIgnore
+	public boolean isEmpty() {
+		return (isEmpty(infoChanged) && isEmpty(infoRemoved) && isEmpty(propertyInfoChanged)
+				&& isEmpty(propertyInfoRemoved) && isEmpty(tagsAdded) && isEmpty(tagsRemoved));
+	}
+
+	private static boolean isEmpty(Map<?, ?> m) {
+		return (m == null || m.isEmpty());
+	}
+
+	private static boolean isEmpty(Set<?> s) {
+		return (s == null || s.isEmpty());
+	}
+
+	/**
+	 * Get the info values added or changed.
+	 *
+	 * @return the info values, or {@literal null}
+	 */
+	@JsonProperty("m")
+	public Map<String, Object> getInfoChanged() {
+		return infoChanged;
+	}
+
+	@JsonProperty("m")
+	public void setInfoChanged(Map<String, Object> infoChanged) {
+		this.infoChanged = infoChanged;
+	}
+
+	/**
+	 * Get the info keys removed.
+	 *
+	 * @return the info keys, or {@literal null}
+	 */
+	@JsonProperty("mr")
+	public Set<String> getInfoRemoved() {
+		return infoRemoved;
+	}
+
+	@JsonProperty("mr")
+	public void setInfoRemoved(Set<String> infoRemoved) {
+		this.infoRemoved = infoRemoved;
+	}
+
+	/**
+	 * Get the property info values added or changed, by property name.
+	 *
+	 * @return the property info values, or {@literal null}
+	 */
+	@JsonProperty("pm")
+	public Map<String, Map<String, Object>> getPropertyInfoChanged() {
+		return propertyInfoChanged;
+	}
+
+	@JsonProperty("pm")
+	public void setPropertyInfoChanged(Map<String, Map<String, Object>> propertyInfoChanged) {
+		this.propertyInfoChanged = propertyInfoChanged;
+	}
+
+	/**
+	 * Get the property info keys removed, by property name. An empty set means
+	 * the entire property was removed.
+	 *
+	 * @return the property info keys, or {@literal null}
+	 */
+	@JsonProperty("pmr")
+	public Map<String, Set<String>> getPropertyInfoRemoved() {
+		return propertyInfoRemoved;
+	}
+
+	@JsonProperty("pmr")
+	public void setPropertyInfoRemoved(Map<String, Set<String>> propertyInfoRemoved) {
+		this.propertyInfoRemoved = propertyInfoRemoved;
+	}
+
+	/**
+	 * Get the tags added.
+	 *
+	 * @return the tags, or {@literal null}
+	 */
+	@JsonProperty("t")
+	public Set<String> getTagsAdded() {
+		return tagsAdded;
+	}
+
+	@JsonProperty("t")
+	public void setTagsAdded(Set<String> tagsAdded) {
+		this.tagsAdded = tagsAdded;
+	}
+
+	/**
+	 * Get the tags removed.
+	 *
+	 * @return the tags, or {@literal null}
+	 */
+	@JsonProperty("tr")
+	public Set<String> getTagsRemoved() {
+		return tagsRemoved;
+	}
+
+	@JsonProperty("tr")
+	public void setTagsRemoved(Set<String> tagsRemoved) {
+		this.tagsRemoved = tagsRemoved;
+	}
+
+	@Override
+	public String toString() {
+		return "GeneralDatumMetadataDiff{m=" + infoChanged + ",mr=" + infoRemoved + ",pm="
+				+ propertyInfoChanged + ",pmr=" + propertyInfoRemoved + ",t=" + tagsAdded + ",tr="
+				+ tagsRemoved + '}';
+	}
+
+}
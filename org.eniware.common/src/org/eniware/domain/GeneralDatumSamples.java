@@ -8,18 +8,29 @@ package org.eniware.domain;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.eniware.util.SerializeIgnore;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
 /**
  * A collection of different types of sample data, grouped by logical sample
  * type.
  * 
- * @version 1.1
+ * <p>
+ * Samples can be made immutable by calling {@link #freeze()}, after which the
+ * hash code is cached and equality checks between frozen instances compare
+ * hash codes before comparing the sample maps. This makes frozen samples
+ * suitable as keys in hash-based caches.
+ * </p>
+ * 
+ * @version 1.2
  */
 public class GeneralDatumSamples extends GeneralDatumSupport implements Serializable {
 
@@ -28,6 +39,8 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 	private Map<String, Number> instantaneous;
 	private Map<String, Number> accumulating;
 	private Map<String, Object> status;
+	private boolean frozen;
+	private transient int hash;
 
 	/**
 	 * Default constructor.
@@ -54,6 +67,67 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		this.status = status;
 	}
 
+	/**
+	 * Make these samples immutable.
+	 * 
+	 * <p>
+	 * The sample maps and tags are copied into unmodifiable collections, so
+	 * later changes to the collections previously passed to this instance do
+	 * not affect it. Afterwards all methods that would modify these samples
+	 * throw {@link UnsupportedOperationException}. Calling this method on
+	 * frozen samples has no effect.
+	 * </p>
+	 * 
+	 * @return this object
+	 * @since 1.2
+	 */
+	public GeneralDatumSamples freeze() {
+		if ( frozen ) {
+			return this;
+		}
+		instantaneous = frozenNumberSampleMap(instantaneous);
+		accumulating = frozenNumberSampleMap(accumulating);
+		if ( status != null ) {
+			status = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(status));
+		}
+		Set<String> tags = getTags();
+		if ( tags instanceof TagBitSet ) {
+			super.setTags(((TagBitSet) tags).toUnmodifiable());
+		} else if ( tags != null ) {
+			super.setTags(Collections.unmodifiableSet(new LinkedHashSet<String>(tags)));
+		}
+		frozen = true;
+		hash = computeHashCode();
+		return this;
+	}
+
+	private Map<String, Number> frozenNumberSampleMap(Map<String, Number> map) {
+		if ( map == null ) {
+			return null;
+		}
+		Map<String, Number> copy = createNumberSampleMap();
+		copy.putAll(map);
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * Test if these samples have been frozen.
+	 * 
+	 * @return <em>true</em> if {@link #freeze()} has been called
+	 * @since 1.2
+	 */
+	@JsonIgnore
+	@SerializeIgnore
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	private void assertNotFrozen() {
+		if ( frozen ) {
+			throw new UnsupportedOperationException("Frozen samples cannot be modified.");
+		}
+	}
+
 	/**
 	 * Get a merged map of all sample data.
 	 * 
@@ -81,6 +155,22 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		return results;
 	}
 
+	/**
+	 * Create a new map to hold numeric sample values.
+	 * 
+	 * <p>
+	 * This method is called when adding a value to the instantaneous or
+	 * accumulating sample maps and the map does not exist yet. This
+	 * implementation returns a new {@link LinkedHashMap}.
+	 * </p>
+	 * 
+	 * @return the new map
+	 * @since 1.2
+	 */
+	protected Map<String, Number> createNumberSampleMap() {
+		return new LinkedHashMap<String, Number>(4);
+	}
+
 	/**
 	 * Put a value into or remove a value from the {@link #getInstantaneous()}
 	 * map, creating the map if it doesn't exist.
@@ -91,18 +181,19 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 	 *        the value to put, or <em>null</em> to remove the key
 	 */
 	public void putInstantaneousSampleValue(String key, Number n) {
+		assertNotFrozen();
 		Map<String, Number> m = instantaneous;
 		if ( m == null ) {
 			if ( n == null ) {
 				return;
 			}
-			m = new LinkedHashMap<String, Number>(4);
+			m = createNumberSampleMap();
 			instantaneous = m;
 		}
 		if ( n == null ) {
 			m.remove(key);
 		} else {
-			m.put(key, n);
+			m.put(canonicalPropertyName(key), n);
 		}
 	}
 
@@ -116,18 +207,19 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 	 *        the value to put, or <em>null</em> to remove the key
 	 */
 	public void putAccumulatingSampleValue(String key, Number n) {
+		assertNotFrozen();
 		Map<String, Number> m = accumulating;
 		if ( m == null ) {
 			if ( n == null ) {
 				return;
 			}
-			m = new LinkedHashMap<String, Number>(4);
+			m = createNumberSampleMap();
 			accumulating = m;
 		}
 		if ( n == null ) {
 			m.remove(key);
 		} else {
-			m.put(key, n);
+			m.put(canonicalPropertyName(key), n);
 		}
 	}
 
@@ -141,6 +233,7 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 	 *        the value to put, or <em>null</em> to remove the key
 	 */
 	public void putStatusSampleValue(String key, Object value) {
+		assertNotFrozen();
 		Map<String, Object> m = status;
 		if ( m == null ) {
 			if ( value == null ) {
@@ -152,7 +245,7 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		if ( value == null ) {
 			m.remove(key);
 		} else {
-			m.put(key, value);
+			m.put(canonicalPropertyName(key), value);
 		}
 	}
 
@@ -348,8 +441,110 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		return getMapString(key, status);
 	}
 
+	/**
+	 * Get a primitive double value from the {@link #getInstantaneous()} map,
+	 * without allocating any objects for numeric values.
+	 * 
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not available
+	 * @return the value, or {@code defaultValue} if not available
+	 * @since 1.2
+	 */
+	public double getInstantaneousSampleDoubleValue(String key, double defaultValue) {
+		return getMapDoubleValue(key, instantaneous, defaultValue);
+	}
+
+	/**
+	 * Get a primitive long value from the {@link #getInstantaneous()} map,
+	 * without allocating any objects for numeric values.
+	 * 
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not available
+	 * @return the value, or {@code defaultValue} if not available
+	 * @since 1.2
+	 */
+	public long getInstantaneousSampleLongValue(String key, long defaultValue) {
+		return getMapLongValue(key, instantaneous, defaultValue);
+	}
+
+	/**
+	 * Get a primitive double value from the {@link #getAccumulating()} map,
+	 * without allocating any objects for numeric values.
+	 * 
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not available
+	 * @return the value, or {@code defaultValue} if not available
+	 * @since 1.2
+	 */
+	public double getAccumulatingSampleDoubleValue(String key, double defaultValue) {
+		return getMapDoubleValue(key, accumulating, defaultValue);
+	}
+
+	/**
+	 * Get a primitive long value from the {@link #getAccumulating()} map,
+	 * without allocating any objects for numeric values.
+	 * 
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not available
+	 * @return the value, or {@code defaultValue} if not available
+	 * @since 1.2
+	 */
+	public long getAccumulatingSampleLongValue(String key, long defaultValue) {
+		return getMapLongValue(key, accumulating, defaultValue);
+	}
+
+	/**
+	 * Get a primitive double value from the {@link #getStatus()} map,
+	 * without allocating any objects for numeric values.
+	 * 
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not available
+	 * @return the value, or {@code defaultValue} if not available
+	 * @since 1.2
+	 */
+	public double getStatusSampleDoubleValue(String key, double defaultValue) {
+		return getMapDoubleValue(key, status, defaultValue);
+	}
+
+	/**
+	 * Get a primitive long value from the {@link #getStatus()} map,
+	 * without allocating any objects for numeric values.
+	 * 
+	 * @param key
+	 *        the key of the value to get
+	 * @param defaultValue
+	 *        the value to return if {@code key} is not available
+	 * @return the value, or {@code defaultValue} if not available
+	 * @since 1.2
+	 */
+	public long getStatusSampleLongValue(String key, long defaultValue) {
+		return getMapLongValue(key, status, defaultValue);
+	}
+
 	@Override
 	public int hashCode() {
+		if ( frozen ) {
+			int h = hash;
+			if ( h == 0 ) {
+				h = computeHashCode();
+				hash = h;
+			}
+			return h;
+		}
+		return computeHashCode();
+	}
+
+	private int computeHashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((accumulating == null) ? 0 : accumulating.hashCode());
@@ -371,6 +566,14 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 			return false;
 		}
 		GeneralDatumSamples other = (GeneralDatumSamples) obj;
+		if ( frozen && other.frozen && hashCode() != other.hashCode() ) {
+			return false;
+		}
+		if ( size(accumulating) != size(other.accumulating)
+				|| size(instantaneous) != size(other.instantaneous)
+				|| size(status) != size(other.status) ) {
+			return false;
+		}
 		if ( accumulating == null ) {
 			if ( other.accumulating != null ) {
 				return false;
@@ -402,6 +605,10 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		return true;
 	}
 
+	private static int size(Map<String, ?> map) {
+		return (map == null ? -1 : map.size());
+	}
+
 	/**
 	 * Shortcut for {@link #getInstantaneous()}.
 	 * 
@@ -411,6 +618,7 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		return getInstantaneous();
 	}
 
+	@JsonDeserialize(keyUsing = PropertyNameKeyDeserializer.class)
 	public void setI(Map<String, Number> map) {
 		setInstantaneous(map);
 	}
@@ -424,6 +632,7 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		return getAccumulating();
 	}
 
+	@JsonDeserialize(keyUsing = PropertyNameKeyDeserializer.class)
 	public void setA(Map<String, Number> map) {
 		setAccumulating(map);
 	}
@@ -437,6 +646,7 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 		return getStatus();
 	}
 
+	@JsonDeserialize(keyUsing = PropertyNameKeyDeserializer.class)
 	public void setS(Map<String, Object> map) {
 		setStatus(map);
 	}
@@ -454,6 +664,7 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 	}
 
 	public void setInstantaneous(Map<String, Number> instantaneous) {
+		assertNotFrozen();
 		this.instantaneous = instantaneous;
 	}
 
@@ -471,6 +682,7 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 	}
 
 	public void setAccumulating(Map<String, Number> accumulating) {
+		assertNotFrozen();
 		this.accumulating = accumulating;
 	}
 
@@ -486,7 +698,26 @@ public class GeneralDatumSamples extends GeneralDatumSupport implements Serializ
 	}
 
 	public void setStatus(Map<String, Object> status) {
+		assertNotFrozen();
 		this.status = status;
 	}
 
+	@Override
+	public void setTags(Set<String> tags) {
+		assertNotFrozen();
+		super.setTags(tags);
+	}
+
+	@Override
+	public void addTag(String tag) {
+		assertNotFrozen();
+		super.addTag(tag);
+	}
+
+	@Override
+	public void removeTag(String tag) {
+		assertNotFrozen();
+		super.removeTag(tag);
+	}
+
 }
@@ -0,0 +1,302 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streaming accumulator that rolls up an ordered stream of
+ * {@link GeneralDatumSamples} per source into fixed-length time intervals.
+ *
+ * <p>
+ * Samples are passed to {@link #addSample(String, long, GeneralDatumSamples)}
+ * in timestamp order per source. When a sample for a source falls into a later
+ * interval than the previous one, the previous interval is passed to the
+ * configured {@link DatumRollupHandler}. Each rollup contains:
+ * </p>
+ *
+ * <ul>
+ * <li>for every instantaneous property, the average value under the property
+ * name and the minimum and maximum values under the property name with
+ * {@link #MIN_PROPERTY_SUFFIX} and {@link #MAX_PROPERTY_SUFFIX} appended</li>
+ * <li>for every accumulating property, the difference between readings
+ * accumulated over the interval</li>
+ * </ul>
+ *
+ * <p>
+ * The difference between two accumulating readings that span an interval
+ * boundary is split between the two intervals, proportional to the time that
+ * falls within each. Intervals with no samples in them are not emitted; any
+ * difference covering such a gap is assigned to the interval of the later
+ * reading. If an accumulating reading is less than the previous reading the
+ * meter is assumed to have been reset: no difference is counted for that pair
+ * of readings and subsequent differences are calculated from the new reading.
+ * </p>
+ *
+ * <p>
+ * Only the current interval statistics and last accumulating reading are kept
+ * per source and property, so memory use does not grow with the length of the
+ * stream. Call {@link #flush()} after the last sample to emit all open
+ * intervals. This class is <b>not</b> thread-safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class GeneralDatumSamplesAccumulator {
+
+	/** The suffix added to instantaneous property names for minimum values. */
+	public static final String MIN_PROPERTY_SUFFIX = "_min";
+
+	/** The suffix added to instantaneous property names for maximum values. */
+	public static final String MAX_PROPERTY_SUFFIX = "_max";
+
+	private final long intervalMillis;
+	private final DatumRollupHandler handler;
+	private final Map<String, SourceState> sources = new LinkedHashMap<String, SourceState>(8);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param intervalMillis
+	 *        the interval length, in milliseconds; intervals are aligned to
+	 *        the epoch
+	 * @param handler
+	 *        the handler to pass rollups to
+	 * @throws IllegalArgumentException
+	 *         if {@code intervalMillis} is less than 1 or {@code handler} is
+	 *         {@literal null}
+	 */
+	public GeneralDatumSamplesAccumulator(long intervalMillis, DatumRollupHandler handler) {
+		super();
+		if ( intervalMillis < 1 ) {
+			throw new IllegalArgumentException("The intervalMillis must be greater than 0.");
+		}
+		if ( handler == null ) {
+			throw new IllegalArgumentException("The handler must be provided.");
+		}
+		this.intervalMillis = intervalMillis;
+		this.handler = handler;
+	}
+
+	private static final class InstantaneousStats {
+
+		private int count;
+		private double sum;
+		private double min;
+		private double max;
+
+		private void add(double v) {
+			if ( count == 0 ) {
+				min = v;
+				max = v;
+			} else if ( v < min ) {
+				min = v;
+			} else if ( v > max ) {
+				max = v;
+			}
+			sum += v;
+			count++;
+		}
+
+	}
+
+	private static final class AccumulatingState {
+
+		private boolean hasReading;
+		private double reading;
+		private long readingDate;
+		private boolean hasDelta;
+		private double delta;
+
+	}
+
+	private static final class SourceState {
+
+		private long intervalStart = Long.MIN_VALUE;
+		private long lastDate = Long.MIN_VALUE;
+		private final Map<String, InstantaneousStats> instantaneous = new LinkedHashMap<String, InstantaneousStats>(
+				8);
+		private final Map<String, AccumulatingState> accumulating = new LinkedHashMap<String, AccumulatingState>(
+				8);
+
+	}
+
+	/**
+	 * Get the start of the interval a date falls within.
+	 *
+	 * @param date
+	 *        the date, in milliseconds since the epoch
+	 * @return the interval start date
+	 */
+	public long intervalStart(long date) {
+		long offset = date % intervalMillis;
+		if ( offset < 0 ) {
+			offset += intervalMillis;
+		}
+		return date - offset;
+	}
+
+	/**
+	 * Add a sample to the stream.
+	 *
+	 * @param sourceId
+	 *        the source ID of the sample
+	 * @param date
+	 *        the sample date, in milliseconds since the epoch
+	 * @param samples
+	 *        the samples
+	 * @throws IllegalArgumentException
+	 *         if {@code date} is earlier than the last date added for the same
+	 *         source
+	 */
+	public void addSample(String sourceId, long date, GeneralDatumSamples samples) {
+		SourceState state = sources.get(sourceId);
+		if ( state == null ) {
+			state = new SourceState();
+			sources.put(sourceId, state);
+		} else if ( date < state.lastDate ) {
+			throw new IllegalArgumentException("Sample date " + date + " for source [" + sourceId
+					+ "] is earlier than previous sample date " + state.lastDate);
+		}
+		final long start = intervalStart(date);
+		if ( state.intervalStart != Long.MIN_VALUE && start != state.intervalStart ) {
+			final long end = state.intervalStart + intervalMillis;
+			Map<String, Number> acc = (samples != null ? samples.getAccumulating() : null);
+			if ( acc != null ) {
+				// allocate the portion of differences up to the interval end to the closing interval
+				for ( Map.Entry<String, Number> me : acc.entrySet() ) {
+					AccumulatingState as = state.accumulating.get(me.getKey());
+					if ( as != null && as.hasReading && me.getValue() != null ) {
+						double diff = difference(as.reading, me.getValue().doubleValue());
+						double portion = diff * (end - as.readingDate) / (date - as.readingDate);
+						as.delta += portion;
+						as.hasDelta = true;
+						as.reading += portion;
+						as.readingDate = end;
+					}
+				}
+			}
+			emit(sourceId, state);
+		}
+		state.intervalStart = start;
+		state.lastDate = date;
+		if ( samples == null ) {
+			return;
+		}
+		Map<String, Number> inst = samples.getInstantaneous();
+		if ( inst != null ) {
+			for ( Map.Entry<String, Number> me : inst.entrySet() ) {
+				if ( me.getValue() == null ) {
+					continue;
+				}
+				InstantaneousStats stats = state.instantaneous.get(me.getKey());
+				if ( stats == null ) {
+					stats = new InstantaneousStats();
+					state.instantaneous.put(me.getKey(), stats);
+				}
+				stats.add(me.getValue().doubleValue());
+			}
+		}
+		Map<String, Number> acc = samples.getAccumulating();
+		if ( acc != null ) {
+			for ( Map.Entry<String, Number> me : acc.entrySet() ) {
+				if ( me.getValue() == null ) {
+					continue;
+				}
+				double v = me.getValue().doubleValue();
+				AccumulatingState as = state.accumulating.get(me.getKey());
+				if ( as == null ) {
+					as = new AccumulatingState();
+					state.accumulating.put(me.getKey(), as);
+				}
+				if ( as.hasReading ) {
+					as.delta += difference(as.reading, v);
+					as.hasDelta = true;
+				}
+				as.hasReading = true;
+				as.reading = v;
+				as.readingDate = date;
+			}
+		}
+	}
+
+	private static double difference(double previous, double current) {
+		// treat a decreasing reading as a meter reset
+		return (current < previous ? 0 : current - previous);
+	}
+
+	private void emit(String sourceId, SourceState state) {
+		GeneralDatumSamples rollup = null;
+		for ( Map.Entry<String, InstantaneousStats> me : state.instantaneous.entrySet() ) {
+			InstantaneousStats stats = me.getValue();
+			if ( stats.count < 1 ) {
+				continue;
+			}
+			if ( rollup == null ) {
+				rollup = new GeneralDatumSamples();
+			}
+			String name = me.getKey();
+			rollup.putInstantaneousSampleValue(name, stats.sum / stats.count);
+			rollup.putInstantaneousSampleValue(name + MIN_PROPERTY_SUFFIX, stats.min);
+			rollup.putInstantaneousSampleValue(name + MAX_PROPERTY_SUFFIX, stats.max);
+			stats.count = 0;
+			stats.sum = 0;
+		}
+		for ( Map.Entry<String, AccumulatingState> me : state.accumulating.entrySet() ) {
+			AccumulatingState as = me.getValue();
+			if ( !as.hasDelta ) {
+				continue;
+			}
+			if ( rollup == null ) {
+				rollup = new GeneralDatumSamples();
+			}
+			rollup.putAccumulatingSampleValue(me.getKey(), as.delta);
+			as.hasDelta = false;
+			as.delta = 0;
+		}
+		if ( rollup != null ) {
+			handler.handleRollup(sourceId, state.intervalStart, state.intervalStart + intervalMillis,
+					rollup);
+		}
+	}
+
+	/**
+	 * Emit the open interval of a single source, and forget all state for that
+	 * source.
+	 *
+	 * @param sourceId
+	 *        the source ID to flush
+	 */
+	public void flush(String sourceId) {
+		SourceState state = sources.remove(sourceId);
+		if ( state != null ) {
+			emit(sourceId, state);
+		}
+	}
+
+	/**
+	 * Emit the open intervals of all sources, and forget all state.
+	 */
+	public void flush() {
+		for ( Map.Entry<String, SourceState> me : sources.entrySet() ) {
+			emit(me.getKey(), me.getValue());
+		}
+		sources.clear();
+	}
+
+	/**
+	 * Get the configured interval length.
+	 *
+	 * @return the interval length, in milliseconds
+	 */
+	public long getIntervalMillis() {
+		return intervalMillis;
+	}
+
+}
@@ -0,0 +1,159 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Calculate {@link GeneralDatumSamplesStatistics} over large lists of
+ * {@link GeneralDatumSamples}, optionally in parallel.
+ *
+ * <p>
+ * The list is split into chunks of {@code chunkSize} elements, statistics are
+ * calculated for each chunk, and the chunk results are merged in list order.
+ * Because the chunk boundaries and merge order depend only on
+ * {@code chunkSize}, the results are identical no matter how many threads the
+ * configured {@code executor} uses, or if no executor is configured at all.
+ * </p>
+ *
+ * <p>
+ * The configurable properties of this class are:
+ * </p>
+ *
+ * <dl class="class-properties">
+ * <dt>executor</dt>
+ * <dd>An optional {@link ExecutorService} to calculate chunks with. If not
+ * configured, chunks are calculated on the calling thread.</dd>
+ *
+ * <dt>chunkSize</dt>
+ * <dd>The number of samples per chunk. Defaults to
+ * {@link #DEFAULT_CHUNK_SIZE}.</dd>
+ * </dl>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class GeneralDatumSamplesAggregator {
+
+	/** The default value for the {@code chunkSize} property. */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private ExecutorService executor;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private static final class ChunkTask implements Callable<GeneralDatumSamplesStatistics> {
+
+		private final List<? extends GeneralDatumSamples> samples;
+
+		private ChunkTask(List<? extends GeneralDatumSamples> samples) {
+			super();
+			this.samples = samples;
+		}
+
+		@Override
+		public GeneralDatumSamplesStatistics call() throws Exception {
+			GeneralDatumSamplesStatistics stats = new GeneralDatumSamplesStatistics();
+			for ( GeneralDatumSamples s : samples ) {
+				stats.add(s);
+			}
+			return stats;
+		}
+
+	}
+
+	/**
+	 * Calculate statistics over a list of samples.
+	 *
+	 * @param samples
+	 *        the samples; must support efficient random access, and must not be
+	 *        modified while this method runs
+	 * @return the statistics, never {@literal null}
+	 * @throws RuntimeException
+	 *         if a chunk calculation fails or the calling thread is
+	 *         interrupted while waiting for results
+	 */
+	public GeneralDatumSamplesStatistics aggregate(List<? extends GeneralDatumSamples> samples) {
+		GeneralDatumSamplesStatistics result = new GeneralDatumSamplesStatistics();
+		if ( samples == null || samples.isEmpty() ) {
+			return result;
+		}
+		final int len = samples.size();
+		final int size = (chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE);
+		final ExecutorService exec = executor;
+		try {
+			if ( exec == null || len <= size ) {
+				for ( int i = 0; i < len; i += size ) {
+					result.merge(new ChunkTask(samples.subList(i, Math.min(len, i + size))).call());
+				}
+				return result;
+			}
+			List<Future<GeneralDatumSamplesStatistics>> futures = new ArrayList<Future<GeneralDatumSamplesStatistics>>(
+					(len / size) + 1);
+			try {
+				for ( int i = 0; i < len; i += size ) {
+					futures.add(exec.submit(new ChunkTask(samples.subList(i, Math.min(len, i + size)))));
+				}
+				for ( Future<GeneralDatumSamplesStatistics> f : futures ) {
+					result.merge(f.get());
+				}
+			} finally {
+				for ( Future<GeneralDatumSamplesStatistics> f : futures ) {
+					f.cancel(true);
+				}
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted aggregating samples", e);
+		} catch ( ExecutionException e ) {
+			Throwable t = e.getCause();
+			if ( t instanceof RuntimeException ) {
+				throw (RuntimeException) t;
+			}
+			throw new RuntimeException("Error aggregating samples", t);
+		} catch ( RuntimeException e ) {
+			throw e;
+		} catch ( Exception e ) {
+			throw new RuntimeException("Error aggregating samples", e);
+		}
+		return result;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Set the executor to calculate chunks with.
+	 *
+	 * @param executor
+	 *        the executor, or {@literal null} to calculate on the calling
+	 *        thread
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Set the number of samples to calculate per chunk.
+	 *
+	 * @param chunkSize
+	 *        the chunk size
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+}
@@ -0,0 +1,446 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.JsonTokenId;
+
+/**
+ * Reader and writer of the compact, schema-driven JSON form of
+ * {@link GeneralDatumSamples} collections.
+ *
+ * <p>
+ * Instead of repeating property names in every sample, a group of samples
+ * (typically all the samples of one source) is written as a JSON object with
+ * a header dictionary of property names, followed by the samples as arrays of
+ * values that reference the header positionally:
+ * </p>
+ *
+ * <pre>
+ * {
+ *   "i": ["watts", "voltage"],
+ *   "a": ["wattHours"],
+ *   "s": ["status"],
+ *   "rows": [
+ *     [230, 240.1, 1000, "ok"],
+ *     [231, null, 1002, null, ["fault"]],
+ *     [229, 239.9]
+ *   ]
+ * }
+ * </pre>
+ *
+ * <p>
+ * Each row holds the instantaneous, accumulating, then status values, in
+ * header order, with {@code null} for values a sample does not have. Trailing
+ * {@code null} values are omitted. A sample with tags is written with all its
+ * values followed by an array of tags. The {@code i}, {@code a}, and
+ * {@code s} header entries are omitted when empty.
+ * </p>
+ *
+ * <p>
+ * Groups of samples keyed by source ID are written as an object with one such
+ * group object per source.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public final class GeneralDatumSamplesCompactJson {
+
+	/** The field name of the instantaneous property names. */
+	public static final String INSTANTANEOUS_FIELD = "i";
+
+	/** The field name of the accumulating property names. */
+	public static final String ACCUMULATING_FIELD = "a";
+
+	/** The field name of the status property names. */
+	public static final String STATUS_FIELD = "s";
+
+	/** The field name of the sample rows. */
+	public static final String ROWS_FIELD = "rows";
+
+	private GeneralDatumSamplesCompactJson() {
+		// don't construct me
+	}
+
+	/**
+	 * Test if an object can be written in the compact form.
+	 *
+	 * <p>
+	 * This is true for any {@link Iterable} of {@link GeneralDatumSamples}
+	 * (ignoring {@literal null} elements) or a {@link Map} whose values are
+	 * all such iterables. The object is iterated to find out, so it must be
+	 * possible to iterate it more than once.
+	 * </p>
+	 *
+	 * @param data
+	 *        the object to test
+	 * @return {@literal true} if {@code data} can be written in compact form
+	 */
+	public static boolean isCompactable(Object data) {
+		if ( data instanceof Map<?, ?> ) {
+			for ( Object group : ((Map<?, ?>) data).values() ) {
+				if ( !isSamples(group) ) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return isSamples(data);
+	}
+
+	private static boolean isSamples(Object data) {
+		if ( !(data instanceof Iterable<?>) ) {
+			return false;
+		}
+		for ( Object o : (Iterable<?>) data ) {
+			if ( o != null && !(o instanceof GeneralDatumSamples) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write groups of samples, keyed by source ID, in compact form.
+	 *
+	 * @param generator
+	 *        the generator to write to
+	 * @param groups
+	 *        the sample groups; each group is iterated twice
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	public static void writeGroups(JsonGenerator generator,
+			Map<?, ? extends Iterable<? extends GeneralDatumSamples>> groups) throws IOException {
+		generator.writeStartObject();
+		for ( Map.Entry<?, ? extends Iterable<? extends GeneralDatumSamples>> me : groups
+				.entrySet() ) {
+			generator.writeFieldName(String.valueOf(me.getKey()));
+			write(generator, me.getValue());
+		}
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Write a group of samples in compact form.
+	 *
+	 * <p>
+	 * The samples are iterated once to collect the property names for the
+	 * header, and then again to write the rows. {@literal null} samples are
+	 * skipped.
+	 * </p>
+	 *
+	 * @param generator
+	 *        the generator to write to
+	 * @param samples
+	 *        the samples to write
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	public static void write(JsonGenerator generator,
+			Iterable<? extends GeneralDatumSamples> samples) throws IOException {
+		final Set<String> iNames = new LinkedHashSet<String>(8);
+		final Set<String> aNames = new LinkedHashSet<String>(8);
+		final Set<String> sNames = new LinkedHashSet<String>(8);
+		for ( GeneralDatumSamples s : samples ) {
+			if ( s == null ) {
+				continue;
+			}
+			addKeys(iNames, s.getInstantaneous());
+			addKeys(aNames, s.getAccumulating());
+			addKeys(sNames, s.getStatus());
+		}
+		final String[] i = iNames.toArray(new String[iNames.size()]);
+		final String[] a = aNames.toArray(new String[aNames.size()]);
+		final String[] st = sNames.toArray(new String[sNames.size()]);
+
+		generator.writeStartObject();
+		writeNames(generator, INSTANTANEOUS_FIELD, i);
+		writeNames(generator, ACCUMULATING_FIELD, a);
+		writeNames(generator, STATUS_FIELD, st);
+		generator.writeArrayFieldStart(ROWS_FIELD);
+		final Object[] row = new Object[i.length + a.length + st.length];
+		for ( GeneralDatumSamples s : samples ) {
+			if ( s == null ) {
+				continue;
+			}
+			fillRow(row, 0, i, s.getInstantaneous());
+			fillRow(row, i.length, a, s.getAccumulating());
+			fillRow(row, i.length + a.length, st, s.getStatus());
+			Set<String> tags = s.getTags();
+			boolean hasTags = (tags != null && !tags.isEmpty());
+			int len = row.length;
+			if ( !hasTags ) {
+				while ( len > 0 && row[len - 1] == null ) {
+					len--;
+				}
+			}
+			generator.writeStartArray();
+			for ( int j = 0; j < len; j++ ) {
+				writeValue(generator, row[j]);
+			}
+			if ( hasTags ) {
+				generator.writeStartArray();
+				for ( String tag : tags ) {
+					generator.writeString(tag);
+				}
+				generator.writeEndArray();
+			}
+			generator.writeEndArray();
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	private static void addKeys(Set<String> names, Map<String, ?> map) {
+		if ( map != null ) {
+			names.addAll(map.keySet());
+		}
+	}
+
+	private static void writeNames(JsonGenerator generator, String field, String[] names)
+			throws IOException {
+		if ( names.length < 1 ) {
+			return;
+		}
+		generator.writeArrayFieldStart(field);
+		for ( String name : names ) {
+			generator.writeString(name);
+		}
+		generator.writeEndArray();
+	}
+
+	private static void fillRow(Object[] row, int offset, String[] names, Map<String, ?> map) {
+		for ( int j = 0; j < names.length; j++ ) {
+			row[offset + j] = (map != null ? map.get(names[j]) : null);
+		}
+	}
+
+	private static void writeValue(JsonGenerator generator, Object v) throws IOException {
+		if ( v == null ) {
+			generator.writeNull();
+		} else if ( v instanceof Integer || v instanceof Short || v instanceof Byte ) {
+			generator.writeNumber(((Number) v).intValue());
+		} else if ( v instanceof Long ) {
+			generator.writeNumber(((Long) v).longValue());
+		} else if ( v instanceof Double ) {
+			generator.writeNumber(((Double) v).doubleValue());
+		} else if ( v instanceof Float ) {
+			generator.writeNumber(((Float) v).floatValue());
+		} else if ( v instanceof BigDecimal ) {
+			generator.writeNumber((BigDecimal) v);
+		} else if ( v instanceof BigInteger ) {
+			generator.writeNumber((BigInteger) v);
+		} else if ( v instanceof String ) {
+			generator.writeString((String) v);
+		} else if ( v instanceof Boolean ) {
+			generator.writeBoolean(((Boolean) v).booleanValue());
+		} else {
+			generator.writeObject(v);
+		}
+	}
+
+	/**
+	 * Read groups of samples, keyed by source ID, in compact form.
+	 *
+	 * @param parser
+	 *        the parser, positioned before or on the start of the groups
+	 *        object
+	 * @return the sample groups, never {@literal null}
+	 * @throws IOException
+	 *         if an IO error occurs or the JSON is not in compact form
+	 */
+	public static Map<String, List<GeneralDatumSamples>> readGroups(JsonParser parser)
+			throws IOException {
+		startObject(parser);
+		Map<String, List<GeneralDatumSamples>> result = new LinkedHashMap<String, List<GeneralDatumSamples>>(
+				8);
+		while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+			String source = parser.getCurrentName();
+			parser.nextToken();
+			result.put(source, read(parser));
+		}
+		return result;
+	}
+
+	/**
+	 * Read a group of samples in compact form.
+	 *
+	 * <p>
+	 * Floating point values are parsed as {@link BigDecimal}. Status values
+	 * that are JSON objects or arrays are read via the parser's codec.
+	 * </p>
+	 *
+	 * @param parser
+	 *        the parser, positioned before or on the start of the group object
+	 * @return the samples, never {@literal null}
+	 * @throws IOException
+	 *         if an IO error occurs or the JSON is not in compact form
+	 */
+	public static List<GeneralDatumSamples> read(JsonParser parser) throws IOException {
+		startObject(parser);
+		String[] i = new String[0];
+		String[] a = i;
+		String[] st = i;
+		List<GeneralDatumSamples> result = null;
+		while ( parser.nextToken() == JsonToken.FIELD_NAME ) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ( INSTANTANEOUS_FIELD.equals(field) ) {
+				i = readNames(parser);
+			} else if ( ACCUMULATING_FIELD.equals(field) ) {
+				a = readNames(parser);
+			} else if ( STATUS_FIELD.equals(field) ) {
+				st = readNames(parser);
+			} else if ( ROWS_FIELD.equals(field) ) {
+				result = readRows(parser, i, a, st);
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return (result != null ? result : new ArrayList<GeneralDatumSamples>(0));
+	}
+
+	private static void startObject(JsonParser parser) throws IOException {
+		JsonToken t = parser.getCurrentToken();
+		if ( t == null ) {
+			t = parser.nextToken();
+		}
+		if ( t != JsonToken.START_OBJECT ) {
+			throw new JsonParseException(parser, "Expected JSON object, got " + t);
+		}
+	}
+
+	private static String[] readNames(JsonParser parser) throws IOException {
+		if ( parser.getCurrentToken() != JsonToken.START_ARRAY ) {
+			throw new JsonParseException(parser,
+					"Expected property name array, got " + parser.getCurrentToken());
+		}
+		List<String> names = new ArrayList<String>(8);
+		while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+			names.add(GeneralDatumSupport.existingPropertyName(parser.getText()));
+		}
+		return names.toArray(new String[names.size()]);
+	}
+
+	private static List<GeneralDatumSamples> readRows(JsonParser parser, String[] i, String[] a,
+			String[] st) throws IOException {
+		if ( parser.getCurrentToken() != JsonToken.START_ARRAY ) {
+			throw new JsonParseException(parser, "Expected rows array, got " + parser.getCurrentToken());
+		}
+		final int aOffset = i.length;
+		final int sOffset = aOffset + a.length;
+		final int tagsOffset = sOffset + st.length;
+		List<GeneralDatumSamples> result = new ArrayList<GeneralDatumSamples>(32);
+		while ( parser.nextToken() == JsonToken.START_ARRAY ) {
+			// populate the maps directly, as the put methods add names to the dictionary
+			Map<String, Number> im = null;
+			Map<String, Number> am = null;
+			Map<String, Object> sm = null;
+			Set<String> tags = null;
+			int idx = 0;
+			for ( JsonToken t = parser.nextToken(); t != JsonToken.END_ARRAY; t = parser
+					.nextToken(), idx++ ) {
+				if ( idx < tagsOffset ) {
+					if ( t == JsonToken.VALUE_NULL ) {
+						continue;
+					}
+					if ( idx < aOffset ) {
+						if ( im == null ) {
+							im = new LinkedHashMap<String, Number>(4);
+						}
+						im.put(i[idx], readNumber(parser));
+					} else if ( idx < sOffset ) {
+						if ( am == null ) {
+							am = new LinkedHashMap<String, Number>(4);
+						}
+						am.put(a[idx - aOffset], readNumber(parser));
+					} else {
+						if ( sm == null ) {
+							sm = new LinkedHashMap<String, Object>(4);
+						}
+						sm.put(st[idx - sOffset], readStatusValue(parser));
+					}
+				} else if ( idx == tagsOffset && t == JsonToken.START_ARRAY ) {
+					tags = new LinkedHashSet<String>(2);
+					while ( parser.nextToken() != JsonToken.END_ARRAY ) {
+						tags.add(parser.getText());
+					}
+				} else {
+					throw new JsonParseException(parser,
+							"Unexpected value at row position " + idx + ": " + t);
+				}
+			}
+			GeneralDatumSamples s = new GeneralDatumSamples(im, am, sm);
+			if ( tags != null && !tags.isEmpty() ) {
+				s.setTags(tags);
+			}
+			result.add(s);
+		}
+		if ( parser.getCurrentToken() != JsonToken.END_ARRAY ) {
+			throw new JsonParseException(parser, "Expected row array, got " + parser.getCurrentToken());
+		}
+		return result;
+	}
+
+	private static Number readNumber(JsonParser parser) throws IOException {
+		switch (parser.getCurrentTokenId()) {
+			case JsonTokenId.ID_NUMBER_INT:
+				return parser.getNumberValue();
+
+			case JsonTokenId.ID_NUMBER_FLOAT:
+				return parser.getDecimalValue();
+
+			case JsonTokenId.ID_STRING:
+				try {
+					return new BigDecimal(parser.getText());
+				} catch ( NumberFormatException e ) {
+					throw new JsonParseException(parser, "Not a valid number: " + parser.getText(), e);
+				}
+
+			default:
+				throw new JsonParseException(parser, "Expected number, got " + parser.getCurrentToken());
+		}
+	}
+
+	private static Object readStatusValue(JsonParser parser) throws IOException {
+		switch (parser.getCurrentTokenId()) {
+			case JsonTokenId.ID_STRING:
+				return parser.getText();
+
+			case JsonTokenId.ID_NUMBER_INT:
+				return parser.getNumberValue();
+
+			case JsonTokenId.ID_NUMBER_FLOAT:
+				return parser.getDecimalValue();
+
+			case JsonTokenId.ID_TRUE:
+				return Boolean.TRUE;
+
+			case JsonTokenId.ID_FALSE:
+				return Boolean.FALSE;
+
+			default:
+				return parser.readValueAs(Object.class);
+		}
+	}
+
+}
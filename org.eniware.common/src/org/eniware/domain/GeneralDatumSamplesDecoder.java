@@ -0,0 +1,423 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import static org.eniware.domain.GeneralDatumSamplesEncoder.FLAG_ACCUMULATING;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.FLAG_INSTANTANEOUS;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.FLAG_STATUS;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.FLAG_TAGS;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.FORMAT_VERSION;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.MAGIC;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.MAX_BLOCK_SIZE;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.MAX_DICTIONARY_SIZE;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_BIG_INTEGER;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_BOOLEAN;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_DECIMAL;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_DOUBLE;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_FLOAT;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_INTEGER;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_LONG;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_MIXED;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.TYPE_STRING;
+import static org.eniware.domain.GeneralDatumSamplesEncoder.UTF8;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decode a stream of dated {@link GeneralDatumSamples} written by
+ * {@link GeneralDatumSamplesEncoder}.
+ *
+ * <p>
+ * The stream is read one block at a time, so only a single block of samples is
+ * held in memory no matter how long the stream is. Call {@link #next()} to
+ * advance to each sample, then {@link #getDate()} and {@link #getSamples()} to
+ * get it:
+ * </p>
+ *
+ * <pre>
+ * GeneralDatumSamplesDecoder decoder = new GeneralDatumSamplesDecoder(in);
+ * while ( decoder.next() ) {
+ * 	handle(decoder.getDate(), decoder.getSamples());
+ * }
+ * </pre>
+ *
+ * <p>
+ * New sample instances are created by {@link #createSamples()}, which can be
+ * overridden to decode into a {@link GeneralDatumSamples} subclass. This class
+ * is <b>not</b> thread-safe.
+ * </p>
+ *
+ * <p>
+ * The stream is treated as untrusted input: blocks larger than
+ * {@link GeneralDatumSamplesEncoder#MAX_BLOCK_SIZE} rows or dictionaries
+ * larger than {@link GeneralDatumSamplesEncoder#MAX_DICTIONARY_SIZE} names are
+ * rejected, and property names are not added to
+ * {@link GeneralDatumSupport#getPropertyNameDictionary()}.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class GeneralDatumSamplesDecoder {
+
+	/** The maximum length allowed for any encoded array. */
+	private static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+	/** The largest array to allocate before its data has been read. */
+	private static final int MAX_INITIAL_ARRAY_LENGTH = 8 * 1024;
+
+	private final InputStream in;
+	private final List<String> dictionary = new ArrayList<String>(64);
+	private long lastDate;
+	private boolean headerRead;
+	private boolean finished;
+
+	private long[] dates;
+	private GeneralDatumSamples[] rows;
+	private int rowCount;
+	private int rowIndex;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in
+	 *        the stream to read from; will be buffered if not already
+	 * @throws IllegalArgumentException
+	 *         if {@code in} is {@literal null}
+	 */
+	public GeneralDatumSamplesDecoder(InputStream in) {
+		super();
+		if ( in == null ) {
+			throw new IllegalArgumentException("The in stream must be provided.");
+		}
+		this.in = (in instanceof BufferedInputStream || in instanceof ByteArrayInputStream ? in
+				: new BufferedInputStream(in));
+	}
+
+	/**
+	 * Create a new samples instance to decode a row into.
+	 *
+	 * <p>
+	 * This implementation returns a new {@link GeneralDatumSamples}.
+	 * </p>
+	 *
+	 * @return the new samples instance
+	 */
+	protected GeneralDatumSamples createSamples() {
+		return new GeneralDatumSamples();
+	}
+
+	/**
+	 * Advance to the next sample in the stream.
+	 *
+	 * @return <em>true</em> if a sample is available, or <em>false</em> if the
+	 *         end of the stream has been reached
+	 * @throws IOException
+	 *         if an IO error occurs or the stream is not valid
+	 */
+	public boolean next() throws IOException {
+		if ( rows != null && rowIndex + 1 < rowCount ) {
+			rows[rowIndex] = null;
+			rowIndex++;
+			return true;
+		}
+		if ( finished ) {
+			return false;
+		}
+		if ( !headerRead ) {
+			readHeader();
+		}
+		int count = readLength();
+		if ( count > MAX_BLOCK_SIZE ) {
+			throw new IOException("Block size " + count + " exceeds maximum " + MAX_BLOCK_SIZE + ".");
+		}
+		if ( count == 0 ) {
+			finished = true;
+			rows = null;
+			rowCount = 0;
+			return false;
+		}
+		readBlock(count);
+		return true;
+	}
+
+	/**
+	 * Get the date of the current sample.
+	 *
+	 * @return the date, in milliseconds since the epoch
+	 * @throws IllegalStateException
+	 *         if {@link #next()} has not returned <em>true</em>
+	 */
+	public long getDate() {
+		assertRow();
+		return dates[rowIndex];
+	}
+
+	/**
+	 * Get the current sample.
+	 *
+	 * @return the samples
+	 * @throws IllegalStateException
+	 *         if {@link #next()} has not returned <em>true</em>
+	 */
+	public GeneralDatumSamples getSamples() {
+		assertRow();
+		return rows[rowIndex];
+	}
+
+	private void assertRow() {
+		if ( rows == null || rowIndex >= rowCount ) {
+			throw new IllegalStateException("No current sample available.");
+		}
+	}
+
+	private void readHeader() throws IOException {
+		for ( int i = 0; i < MAGIC.length; i++ ) {
+			if ( readByte() != MAGIC[i] ) {
+				throw new IOException("Not an encoded samples stream.");
+			}
+		}
+		int version = readByte();
+		if ( version != FORMAT_VERSION ) {
+			throw new IOException("Unsupported encoded samples version " + version + ".");
+		}
+		headerRead = true;
+	}
+
+	private void readBlock(final int count) throws IOException {
+		if ( rows == null || rows.length < count ) {
+			dates = new long[count];
+			rows = new GeneralDatumSamples[count];
+		}
+		rowCount = count;
+		rowIndex = 0;
+
+		// new dictionary entries
+		int names = readLength();
+		if ( names > MAX_DICTIONARY_SIZE - dictionary.size() ) {
+			throw new IOException("Dictionary size exceeds maximum " + MAX_DICTIONARY_SIZE + ".");
+		}
+		for ( int i = 0; i < names; i++ ) {
+			// untrusted input, so only use names already in the global dictionary
+			dictionary.add(GeneralDatumSupport.existingPropertyName(readString()));
+		}
+
+		// dates and row flags
+		long prev = lastDate;
+		for ( int r = 0; r < count; r++ ) {
+			prev += unZigZag(readVarLong());
+			dates[r] = prev;
+		}
+		lastDate = prev;
+		final byte[] flags = readBytes(count);
+
+		for ( int r = 0; r < count; r++ ) {
+			rows[r] = createSamples();
+		}
+		readColumns(count, FLAG_INSTANTANEOUS);
+		readColumns(count, FLAG_ACCUMULATING);
+		readColumns(count, FLAG_STATUS);
+
+		for ( int r = 0; r < count; r++ ) {
+			GeneralDatumSamples s = rows[r];
+			int f = flags[r];
+			if ( (f & FLAG_INSTANTANEOUS) != 0 && s.getInstantaneous() == null ) {
+				s.setInstantaneous(new LinkedHashMap<String, Number>(0));
+			}
+			if ( (f & FLAG_ACCUMULATING) != 0 && s.getAccumulating() == null ) {
+				s.setAccumulating(new LinkedHashMap<String, Number>(0));
+			}
+			if ( (f & FLAG_STATUS) != 0 && s.getStatus() == null ) {
+				s.setStatus(new LinkedHashMap<String, Object>(0));
+			}
+			if ( (f & FLAG_TAGS) != 0 ) {
+				int tagCount = readLength();
+				Set<String> tags = new LinkedHashSet<String>(Math.max(2, tagCount * 2));
+				for ( int i = 0; i < tagCount; i++ ) {
+					tags.add(name(readLength()));
+				}
+				s.setTags(tags);
+			}
+		}
+	}
+
+	private void readColumns(final int count, final int kind) throws IOException {
+		final int columns = readLength();
+		for ( int c = 0; c < columns; c++ ) {
+			final String name = name(readLength());
+			final byte[] mask = readBytes((count + 7) >> 3);
+			final int type = readByte();
+			long prev = 0;
+			for ( int r = 0; r < count; r++ ) {
+				if ( (mask[r >> 3] & (1 << (r & 7))) == 0 ) {
+					continue;
+				}
+				Object v;
+				if ( type == TYPE_INTEGER || type == TYPE_LONG ) {
+					prev += unZigZag(readVarLong());
+					v = (type == TYPE_INTEGER ? (Object) Integer.valueOf((int) prev)
+							: (Object) Long.valueOf(prev));
+				} else if ( type == TYPE_MIXED ) {
+					v = readValue(readByte());
+				} else {
+					v = readValue(type);
+				}
+				// populate the maps directly, as the put methods add names to the dictionary
+				GeneralDatumSamples s = rows[r];
+				if ( kind == FLAG_STATUS ) {
+					Map<String, Object> m = s.getStatus();
+					if ( m == null ) {
+						m = new LinkedHashMap<String, Object>(4);
+						s.setStatus(m);
+					}
+					m.put(name, v);
+				} else if ( !(v instanceof Number) ) {
+					throw new IOException("Non-numeric value in numeric column [" + name + "].");
+				} else {
+					numberMap(s, kind).put(name, (Number) v);
+				}
+			}
+		}
+	}
+
+	private static Map<String, Number> numberMap(GeneralDatumSamples s, int kind) {
+		Map<String, Number> m = (kind == FLAG_INSTANTANEOUS ? s.getInstantaneous()
+				: s.getAccumulating());
+		if ( m == null ) {
+			m = s.createNumberSampleMap();
+			if ( kind == FLAG_INSTANTANEOUS ) {
+				s.setInstantaneous(m);
+			} else {
+				s.setAccumulating(m);
+			}
+		}
+		return m;
+	}
+
+	private Object readValue(int type) throws IOException {
+		switch (type) {
+			case TYPE_INTEGER:
+				return Integer.valueOf((int) unZigZag(readVarLong()));
+
+			case TYPE_LONG:
+				return Long.valueOf(unZigZag(readVarLong()));
+
+			case TYPE_FLOAT:
+				return Float.valueOf(Float.intBitsToFloat((int) readFixed(4)));
+
+			case TYPE_DOUBLE:
+				return Double.valueOf(Double.longBitsToDouble(readFixed(8)));
+
+			case TYPE_DECIMAL: {
+				int scale = (int) unZigZag(readVarLong());
+				return new BigDecimal(readBigInteger(), scale);
+			}
+
+			case TYPE_BIG_INTEGER:
+				return readBigInteger();
+
+			case TYPE_BOOLEAN:
+				return Boolean.valueOf(readByte() != 0);
+
+			case TYPE_STRING:
+				return readString();
+
+			default:
+				throw new IOException("Unsupported value type " + type + ".");
+		}
+	}
+
+	private String name(int id) throws IOException {
+		if ( id >= dictionary.size() ) {
+			throw new IOException("Dictionary index " + id + " not defined.");
+		}
+		return dictionary.get(id);
+	}
+
+	private BigInteger readBigInteger() throws IOException {
+		int n = readLength();
+		if ( n == 0 ) {
+			return BigInteger.valueOf(unZigZag(readVarLong()));
+		}
+		return new BigInteger(readBytes(n));
+	}
+
+	private String readString() throws IOException {
+		return new String(readBytes(readLength()), UTF8);
+	}
+
+	private byte[] readBytes(int n) throws IOException {
+		// grow the array as data arrives, so a bad length cannot force a large allocation
+		byte[] b = new byte[Math.min(n, MAX_INITIAL_ARRAY_LENGTH)];
+		int off = 0;
+		while ( off < n ) {
+			if ( off == b.length ) {
+				b = Arrays.copyOf(b, (int) Math.min(n, 2L * b.length));
+			}
+			int c = in.read(b, off, b.length - off);
+			if ( c < 0 ) {
+				throw new EOFException();
+			}
+			off += c;
+		}
+		return b;
+	}
+
+	private long readFixed(int bytes) throws IOException {
+		long v = 0;
+		for ( int i = 0; i < bytes; i++ ) {
+			v = (v << 8) | readByte();
+		}
+		return v;
+	}
+
+	private int readByte() throws IOException {
+		int b = in.read();
+		if ( b < 0 ) {
+			throw new EOFException();
+		}
+		return b;
+	}
+
+	private int readLength() throws IOException {
+		long v = readVarLong();
+		if ( v < 0 || v > MAX_LENGTH ) {
+			throw new IOException("Invalid length " + v + ".");
+		}
+		return (int) v;
+	}
+
+	private long readVarLong() throws IOException {
+		long v = 0;
+		for ( int shift = 0; shift < 64; shift += 7 ) {
+			int b = readByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return v;
+			}
+		}
+		throw new IOException("Malformed variable-length number.");
+	}
+
+	private static long unZigZag(long n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+}
@@ -0,0 +1,117 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+/**
+ * Streaming deserializer for {@link GeneralDatumSamples} and its subclasses.
+ *
+ * <p>
+ * The {@code i}, {@code a}, {@code s}, and {@code t} properties are read token
+ * by token directly into the samples, with numeric values stored in the map
+ * returned by {@link GeneralDatumSamples#createNumberSampleMap()}. Property
+ * names are canonicalized the same way as with the default Jackson binding,
+ * without adding new names to the property name dictionary.
+ * {@literal null} instantaneous and accumulating values are skipped. This
+ * deserializer is not registered by default; add it to an
+ * {@link com.fasterxml.jackson.databind.ObjectMapper}, for example via the
+ * {@code deserializers} property of
+ * {@link org.eniware.util.ObjectMapperFactoryBean}.
+ * </p>
+ *
+ * @param <T>
+ *        the type of samples handled
+ * @version 1.0
+ * @since 1.42
+ */
+public class GeneralDatumSamplesDeserializer<T extends GeneralDatumSamples>
+		extends GeneralDatumSupportDeserializer<T> {
+
+	private static final long serialVersionUID = -2366208463689768337L;
+
+	/** A default instance for {@link GeneralDatumSamples}. */
+	public static final GeneralDatumSamplesDeserializer<GeneralDatumSamples> INSTANCE = new GeneralDatumSamplesDeserializer<GeneralDatumSamples>(
+			GeneralDatumSamples.class, false);
+
+	/**
+	 * An instance for {@link GeneralDatumSamples} that parses numbers as
+	 * primitive values.
+	 */
+	public static final GeneralDatumSamplesDeserializer<GeneralDatumSamples> PRIMITIVE_NUMBERS_INSTANCE = new GeneralDatumSamplesDeserializer<GeneralDatumSamples>(
+			GeneralDatumSamples.class, true);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param clazz
+	 *        the samples type to create; must have a public no-argument
+	 *        constructor
+	 * @param primitiveNumbers
+	 *        {@literal true} to parse numbers as primitive {@code double} and
+	 *        {@code long} values
+	 */
+	public GeneralDatumSamplesDeserializer(Class<T> clazz, boolean primitiveNumbers) {
+		super(clazz, primitiveNumbers);
+	}
+
+	/**
+	 * Create a new samples instance.
+	 *
+	 * @param p
+	 *        the parser
+	 * @return the new instance
+	 * @throws IOException
+	 *         if the instance cannot be created
+	 */
+	@SuppressWarnings("unchecked")
+	protected T createSamples(JsonParser p) throws IOException {
+		try {
+			return (T) handledType().newInstance();
+		} catch ( InstantiationException e ) {
+			throw JsonMappingException.from(p, "Unable to create " + handledType().getName(), e);
+		} catch ( IllegalAccessException e ) {
+			throw JsonMappingException.from(p, "Unable to create " + handledType().getName(), e);
+		}
+	}
+
+	@Override
+	public T deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+		final T samples = createSamples(p);
+		for ( JsonToken t = startObject(p, ctxt); t == JsonToken.FIELD_NAME; t = p.nextToken() ) {
+			final String field = p.getCurrentName();
+			p.nextToken();
+			if ( "i".equals(field) ) {
+				samples.setInstantaneous(readNumberSamples(p, ctxt, samples));
+			} else if ( "a".equals(field) ) {
+				samples.setAccumulating(readNumberSamples(p, ctxt, samples));
+			} else if ( "s".equals(field) ) {
+				samples.setStatus(readObjectMap(p, ctxt, true));
+			} else if ( "t".equals(field) ) {
+				readTags(p, ctxt, samples);
+			} else {
+				ctxt.handleUnknownProperty(p, this, samples, field);
+			}
+		}
+		return samples;
+	}
+
+	private Map<String, Number> readNumberSamples(JsonParser p, DeserializationContext ctxt,
+			GeneralDatumSamples samples) throws IOException {
+		if ( p.getCurrentToken() == JsonToken.VALUE_NULL ) {
+			return null;
+		}
+		return readNumberMap(p, ctxt, samples.createNumberSampleMap());
+	}
+
+}
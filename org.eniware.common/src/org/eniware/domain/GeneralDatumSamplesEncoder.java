@@ -0,0 +1,502 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encode a stream of dated {@link GeneralDatumSamples} into a compact, columnar
+ * binary form.
+ *
+ * <p>
+ * Samples are collected into blocks of up to {@code blockSize} rows. Each block
+ * is written as a set of columns, one per sample property, so that values of
+ * the same property are stored next to each other in a typed encoding:
+ * </p>
+ *
+ * <ul>
+ * <li>property names and tags are written once per stream into a shared
+ * dictionary, and referred to by their dictionary index afterwards</li>
+ * <li>dates are written as variable-length deltas from the previous date</li>
+ * <li>{@link Integer} and {@link Long} columns are written as variable-length
+ * deltas from the previous value in the column</li>
+ * <li>{@link Float}, {@link Double}, {@link BigDecimal}, and
+ * {@link BigInteger} columns are written in a fixed binary form</li>
+ * <li>columns containing different value types write a type code before each
+ * value</li>
+ * </ul>
+ *
+ * <p>
+ * Number types are preserved, except that other {@link Number} types are
+ * written as {@link BigDecimal}. Status values other than strings, booleans,
+ * and numbers are written as strings using {@link Object#toString()}. Use
+ * {@link GeneralDatumSamplesDecoder} to read the encoded stream. This class is
+ * <b>not</b> thread-safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class GeneralDatumSamplesEncoder {
+
+	/** The default value for the {@code blockSize} property. */
+	public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+	/**
+	 * The maximum {@code blockSize} allowed, which is also the largest block
+	 * {@link GeneralDatumSamplesDecoder} will accept.
+	 */
+	public static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+	/**
+	 * The maximum number of distinct property names and tags allowed in one
+	 * stream, which is also the largest dictionary
+	 * {@link GeneralDatumSamplesDecoder} will accept.
+	 */
+	public static final int MAX_DICTIONARY_SIZE = 64 * 1024;
+
+	/** The stream header bytes. */
+	static final byte[] MAGIC = new byte[] { 'E', 'G', 'D', 'S' };
+
+	/** The stream format version. */
+	static final int FORMAT_VERSION = 1;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static final int FLAG_INSTANTANEOUS = 1;
+	static final int FLAG_ACCUMULATING = 2;
+	static final int FLAG_STATUS = 4;
+	static final int FLAG_TAGS = 8;
+
+	static final int TYPE_INTEGER = 1;
+	static final int TYPE_LONG = 2;
+	static final int TYPE_FLOAT = 3;
+	static final int TYPE_DOUBLE = 4;
+	static final int TYPE_DECIMAL = 5;
+	static final int TYPE_BIG_INTEGER = 6;
+	static final int TYPE_STRING = 7;
+	static final int TYPE_BOOLEAN = 8;
+	static final int TYPE_MIXED = 9;
+
+	private final OutputStream out;
+	private final int blockSize;
+	private final Map<String, Integer> dictionary = new HashMap<String, Integer>(64);
+	private final List<String> newNames = new ArrayList<String>(16);
+	private final long[] dates;
+	private final GeneralDatumSamples[] rows;
+	private int rowCount;
+	private long lastDate;
+	private boolean headerWritten;
+	private boolean finished;
+
+	private byte[] buf = new byte[4096];
+	private int len;
+
+	/**
+	 * Construct with the default block size.
+	 *
+	 * @param out
+	 *        the stream to write to
+	 */
+	public GeneralDatumSamplesEncoder(OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out
+	 *        the stream to write to
+	 * @param blockSize
+	 *        the maximum number of samples to write per block
+	 * @throws IllegalArgumentException
+	 *         if {@code out} is {@literal null} or {@code blockSize} is less
+	 *         than 1 or greater than {@link #MAX_BLOCK_SIZE}
+	 */
+	public GeneralDatumSamplesEncoder(OutputStream out, int blockSize) {
+		super();
+		if ( out == null ) {
+			throw new IllegalArgumentException("The out stream must be provided.");
+		}
+		if ( blockSize < 1 || blockSize > MAX_BLOCK_SIZE ) {
+			throw new IllegalArgumentException(
+					"The blockSize must be between 1 and " + MAX_BLOCK_SIZE + ".");
+		}
+		this.out = out;
+		this.blockSize = blockSize;
+		this.dates = new long[blockSize];
+		this.rows = new GeneralDatumSamples[blockSize];
+	}
+
+	/**
+	 * Add samples to the stream.
+	 *
+	 * <p>
+	 * The samples are written once a full block has been collected, so they
+	 * must not be modified until {@link #flush()} or {@link #finish()} is
+	 * called.
+	 * </p>
+	 *
+	 * @param date
+	 *        the sample date, in milliseconds since the epoch
+	 * @param samples
+	 *        the samples to add
+	 * @throws IOException
+	 *         if an IO error occurs, or the stream would have more than
+	 *         {@link #MAX_DICTIONARY_SIZE} distinct property names and tags
+	 * @throws IllegalArgumentException
+	 *         if {@code samples} is {@literal null}
+	 * @throws IllegalStateException
+	 *         if {@link #finish()} has been called
+	 */
+	public void add(long date, GeneralDatumSamples samples) throws IOException {
+		if ( samples == null ) {
+			throw new IllegalArgumentException("The samples must be provided.");
+		}
+		if ( finished ) {
+			throw new IllegalStateException("The encoder has been finished.");
+		}
+		dates[rowCount] = date;
+		rows[rowCount] = samples;
+		rowCount++;
+		if ( rowCount == blockSize ) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Write any collected samples as a block and flush the output stream.
+	 *
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	public void flush() throws IOException {
+		if ( rowCount > 0 ) {
+			writeBlock();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write any collected samples and the end of stream marker, and flush the
+	 * output stream. The output stream is not closed.
+	 *
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	public void finish() throws IOException {
+		if ( finished ) {
+			return;
+		}
+		if ( rowCount > 0 ) {
+			writeBlock();
+		}
+		len = 0;
+		writeHeaderIfNeeded();
+		writeVarInt(0);
+		out.write(buf, 0, len);
+		len = 0;
+		out.flush();
+		finished = true;
+	}
+
+	private void writeHeaderIfNeeded() {
+		if ( !headerWritten ) {
+			ensure(MAGIC.length + 1);
+			System.arraycopy(MAGIC, 0, buf, len, MAGIC.length);
+			len += MAGIC.length;
+			buf[len++] = (byte) FORMAT_VERSION;
+			headerWritten = true;
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		final int count = rowCount;
+		final Map<String, Object[]> instantaneous = new LinkedHashMap<String, Object[]>(16);
+		final Map<String, Object[]> accumulating = new LinkedHashMap<String, Object[]>(16);
+		final Map<String, Object[]> status = new LinkedHashMap<String, Object[]>(16);
+		final byte[] flags = new byte[count];
+		for ( int r = 0; r < count; r++ ) {
+			GeneralDatumSamples s = rows[r];
+			int f = 0;
+			if ( s.getInstantaneous() != null ) {
+				f |= FLAG_INSTANTANEOUS;
+				collect(s.getInstantaneous(), instantaneous, r, count);
+			}
+			if ( s.getAccumulating() != null ) {
+				f |= FLAG_ACCUMULATING;
+				collect(s.getAccumulating(), accumulating, r, count);
+			}
+			if ( s.getStatus() != null ) {
+				f |= FLAG_STATUS;
+				collect(s.getStatus(), status, r, count);
+			}
+			if ( s.getTags() != null ) {
+				f |= FLAG_TAGS;
+				for ( String tag : s.getTags() ) {
+					dictionaryId(tag);
+				}
+			}
+			flags[r] = (byte) f;
+		}
+
+		len = 0;
+		writeHeaderIfNeeded();
+		writeVarInt(count);
+
+		// new dictionary entries
+		writeVarInt(newNames.size());
+		for ( String name : newNames ) {
+			writeString(name);
+		}
+		newNames.clear();
+
+		// dates and row flags
+		long prev = lastDate;
+		for ( int r = 0; r < count; r++ ) {
+			writeVarLong(zigZag(dates[r] - prev));
+			prev = dates[r];
+		}
+		lastDate = prev;
+		ensure(count);
+		System.arraycopy(flags, 0, buf, len, count);
+		len += count;
+
+		writeColumns(instantaneous, count);
+		writeColumns(accumulating, count);
+		writeColumns(status, count);
+
+		// tags
+		for ( int r = 0; r < count; r++ ) {
+			if ( (flags[r] & FLAG_TAGS) == 0 ) {
+				continue;
+			}
+			Set<String> tags = rows[r].getTags();
+			writeVarInt(tags.size());
+			for ( String tag : tags ) {
+				writeVarInt(dictionary.get(tag));
+			}
+		}
+
+		out.write(buf, 0, len);
+		len = 0;
+		for ( int r = 0; r < count; r++ ) {
+			rows[r] = null;
+		}
+		rowCount = 0;
+	}
+
+	private void collect(Map<String, ?> map, Map<String, Object[]> columns, int row, int count)
+			throws IOException {
+		for ( Map.Entry<String, ?> me : map.entrySet() ) {
+			if ( me.getKey() == null || me.getValue() == null ) {
+				continue;
+			}
+			Object[] col = columns.get(me.getKey());
+			if ( col == null ) {
+				dictionaryId(me.getKey());
+				col = new Object[count];
+				columns.put(me.getKey(), col);
+			}
+			col[row] = me.getValue();
+		}
+	}
+
+	private int dictionaryId(String name) throws IOException {
+		Integer id = dictionary.get(name);
+		if ( id == null ) {
+			if ( dictionary.size() >= MAX_DICTIONARY_SIZE ) {
+				throw new IOException("More than " + MAX_DICTIONARY_SIZE
+						+ " distinct property names and tags in stream.");
+			}
+			id = dictionary.size();
+			dictionary.put(name, id);
+			newNames.add(name);
+		}
+		return id.intValue();
+	}
+
+	private static int typeOf(Object v) {
+		if ( v instanceof Integer ) {
+			return TYPE_INTEGER;
+		} else if ( v instanceof Long ) {
+			return TYPE_LONG;
+		} else if ( v instanceof Double ) {
+			return TYPE_DOUBLE;
+		} else if ( v instanceof Float ) {
+			return TYPE_FLOAT;
+		} else if ( v instanceof BigDecimal ) {
+			return TYPE_DECIMAL;
+		} else if ( v instanceof BigInteger ) {
+			return TYPE_BIG_INTEGER;
+		} else if ( v instanceof Number ) {
+			return TYPE_DECIMAL;
+		} else if ( v instanceof Boolean ) {
+			return TYPE_BOOLEAN;
+		}
+		return TYPE_STRING;
+	}
+
+	private void writeColumns(Map<String, Object[]> columns, int count) {
+		writeVarInt(columns.size());
+		final int maskLength = (count + 7) >> 3;
+		for ( Map.Entry<String, Object[]> me : columns.entrySet() ) {
+			final Object[] col = me.getValue();
+			writeVarInt(dictionary.get(me.getKey()));
+
+			// presence bit mask and column type
+			ensure(maskLength + 1);
+			int type = 0;
+			for ( int r = 0; r < count; r++ ) {
+				if ( (r & 7) == 0 ) {
+					buf[len + (r >> 3)] = 0;
+				}
+				if ( col[r] != null ) {
+					buf[len + (r >> 3)] |= (byte) (1 << (r & 7));
+					int t = typeOf(col[r]);
+					if ( type == 0 ) {
+						type = t;
+					} else if ( type != t ) {
+						type = TYPE_MIXED;
+					}
+				}
+			}
+			len += maskLength;
+			buf[len++] = (byte) type;
+
+			long prev = 0;
+			for ( int r = 0; r < count; r++ ) {
+				Object v = col[r];
+				if ( v == null ) {
+					continue;
+				}
+				if ( type == TYPE_INTEGER || type == TYPE_LONG ) {
+					long l = ((Number) v).longValue();
+					writeVarLong(zigZag(l - prev));
+					prev = l;
+				} else if ( type == TYPE_MIXED ) {
+					int t = typeOf(v);
+					ensure(1);
+					buf[len++] = (byte) t;
+					writeValue(t, v);
+				} else {
+					writeValue(type, v);
+				}
+			}
+		}
+	}
+
+	private void writeValue(int type, Object v) {
+		switch (type) {
+			case TYPE_INTEGER:
+			case TYPE_LONG:
+				writeVarLong(zigZag(((Number) v).longValue()));
+				break;
+
+			case TYPE_FLOAT:
+				writeFixed(Float.floatToIntBits(((Float) v).floatValue()), 4);
+				break;
+
+			case TYPE_DOUBLE:
+				writeFixed(Double.doubleToLongBits(((Double) v).doubleValue()), 8);
+				break;
+
+			case TYPE_DECIMAL: {
+				BigDecimal d = (v instanceof BigDecimal ? (BigDecimal) v
+						: new BigDecimal(v.toString()));
+				writeVarLong(zigZag(d.scale()));
+				writeBigInteger(d.unscaledValue());
+			}
+				break;
+
+			case TYPE_BIG_INTEGER:
+				writeBigInteger((BigInteger) v);
+				break;
+
+			case TYPE_BOOLEAN:
+				ensure(1);
+				buf[len++] = (byte) (((Boolean) v).booleanValue() ? 1 : 0);
+				break;
+
+			default:
+				writeString(v.toString());
+		}
+	}
+
+	private void writeBigInteger(BigInteger n) {
+		if ( n.bitLength() < 64 ) {
+			writeVarInt(0);
+			writeVarLong(zigZag(n.longValue()));
+		} else {
+			byte[] b = n.toByteArray();
+			writeVarInt(b.length);
+			ensure(b.length);
+			System.arraycopy(b, 0, buf, len, b.length);
+			len += b.length;
+		}
+	}
+
+	private void writeString(String s) {
+		byte[] b = s.getBytes(UTF8);
+		writeVarInt(b.length);
+		ensure(b.length);
+		System.arraycopy(b, 0, buf, len, b.length);
+		len += b.length;
+	}
+
+	private void writeFixed(long v, int bytes) {
+		ensure(bytes);
+		for ( int shift = (bytes - 1) * 8; shift >= 0; shift -= 8 ) {
+			buf[len++] = (byte) (v >>> shift);
+		}
+	}
+
+	private static long zigZag(long n) {
+		return (n << 1) ^ (n >> 63);
+	}
+
+	private void writeVarInt(int v) {
+		writeVarLong(v & 0xFFFFFFFFL);
+	}
+
+	private void writeVarLong(long v) {
+		ensure(10);
+		while ( (v & ~0x7FL) != 0 ) {
+			buf[len++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[len++] = (byte) v;
+	}
+
+	private void ensure(int n) {
+		if ( len + n > buf.length ) {
+			byte[] b = new byte[Math.max(buf.length * 2, len + n)];
+			System.arraycopy(buf, 0, b, 0, len);
+			buf = b;
+		}
+	}
+
+	/**
+	 * Get the configured block size.
+	 *
+	 * @return the maximum number of samples written per block
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+}
@@ -0,0 +1,124 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-property statistics calculated over a set of
+ * {@link GeneralDatumSamples}, grouped by sample type.
+ *
+ * <p>
+ * Status statistics only include status values that are {@link Number}
+ * instances.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ * @see GeneralDatumSamplesAggregator
+ */
+public class GeneralDatumSamplesStatistics implements Serializable {
+
+	private static final long serialVersionUID = -1738214418766302370L;
+
+	private final Map<String, DatumPropertyStatistics> instantaneous = new LinkedHashMap<String, DatumPropertyStatistics>(
+			8);
+	private final Map<String, DatumPropertyStatistics> accumulating = new LinkedHashMap<String, DatumPropertyStatistics>(
+			8);
+	private final Map<String, DatumPropertyStatistics> status = new LinkedHashMap<String, DatumPropertyStatistics>(
+			8);
+
+	/**
+	 * Add the values of a samples instance.
+	 *
+	 * @param samples
+	 *        the samples to add; {@literal null} is ignored
+	 */
+	public void add(GeneralDatumSamples samples) {
+		if ( samples == null ) {
+			return;
+		}
+		addAll(instantaneous, samples.getInstantaneous());
+		addAll(accumulating, samples.getAccumulating());
+		addAll(status, samples.getStatus());
+	}
+
+	private static void addAll(Map<String, DatumPropertyStatistics> stats, Map<String, ?> values) {
+		if ( values == null ) {
+			return;
+		}
+		for ( Map.Entry<String, ?> me : values.entrySet() ) {
+			Object v = me.getValue();
+			if ( !(v instanceof Number) ) {
+				continue;
+			}
+			DatumPropertyStatistics s = stats.get(me.getKey());
+			if ( s == null ) {
+				s = new DatumPropertyStatistics();
+				stats.put(me.getKey(), s);
+			}
+			s.add(((Number) v).doubleValue());
+		}
+	}
+
+	/**
+	 * Merge another statistics instance into this one.
+	 *
+	 * @param other
+	 *        the statistics to merge
+	 */
+	public void merge(GeneralDatumSamplesStatistics other) {
+		if ( other == null ) {
+			return;
+		}
+		mergeAll(instantaneous, other.instantaneous);
+		mergeAll(accumulating, other.accumulating);
+		mergeAll(status, other.status);
+	}
+
+	private static void mergeAll(Map<String, DatumPropertyStatistics> stats,
+			Map<String, DatumPropertyStatistics> others) {
+		for ( Map.Entry<String, DatumPropertyStatistics> me : others.entrySet() ) {
+			DatumPropertyStatistics s = stats.get(me.getKey());
+			if ( s == null ) {
+				s = new DatumPropertyStatistics();
+				stats.put(me.getKey(), s);
+			}
+			s.merge(me.getValue());
+		}
+	}
+
+	/**
+	 * Get the instantaneous property statistics.
+	 *
+	 * @return map of property names to statistics, never {@literal null}
+	 */
+	public Map<String, DatumPropertyStatistics> getInstantaneous() {
+		return instantaneous;
+	}
+
+	/**
+	 * Get the accumulating property statistics.
+	 *
+	 * @return map of property names to statistics, never {@literal null}
+	 */
+	public Map<String, DatumPropertyStatistics> getAccumulating() {
+		return accumulating;
+	}
+
+	/**
+	 * Get the numeric status property statistics.
+	 *
+	 * @return map of property names to statistics, never {@literal null}
+	 */
+	public Map<String, DatumPropertyStatistics> getStatus() {
+		return status;
+	}
+
+}
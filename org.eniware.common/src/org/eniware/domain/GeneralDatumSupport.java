@@ -8,10 +8,12 @@ package org.eniware.domain;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.eniware.util.KeyDictionary;
 import org.eniware.util.SerializeIgnore;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -19,14 +21,84 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 /**
  * Supporting abstract class for general Edge datum related objects.
  *
- * @version 1.0
+ * @version 1.1
  */
 public abstract class GeneralDatumSupport implements Serializable {
 
 	private static final long serialVersionUID = -4264640101068495508L;
 
+	private static final KeyDictionary PROPERTY_NAMES = new KeyDictionary();
+
+	private static final KeyDictionary TAG_NAMES = new KeyDictionary();
+
 	private Set<String> tags;
 
+	/**
+	 * Get the process-wide dictionary of datum property names.
+	 * 
+	 * <p>
+	 * Property names added via the sample and metadata {@code put} methods are
+	 * canonicalized through this dictionary so that repeated names share one
+	 * {@link String} instance and a stable ID. Property names deserialized from
+	 * JSON only use names already in the dictionary, and are never added to
+	 * it.
+	 * </p>
+	 * 
+	 * @return the dictionary
+	 * @since 1.1
+	 */
+	public static KeyDictionary getPropertyNameDictionary() {
+		return PROPERTY_NAMES;
+	}
+
+	/**
+	 * Get the process-wide dictionary of tags.
+	 * 
+	 * <p>
+	 * This dictionary assigns the tag IDs used by {@link TagBitSet}. Tags
+	 * added via {@link #addTag(String)} are added to the dictionary, while
+	 * deserialized tags only use existing IDs.
+	 * </p>
+	 * 
+	 * @return the dictionary
+	 * @since 1.1
+	 */
+	public static KeyDictionary getTagDictionary() {
+		return TAG_NAMES;
+	}
+
+	/**
+	 * Get the canonical instance of a property name.
+	 * 
+	 * @param name
+	 *        the property name
+	 * @return the canonical property name
+	 * @see #getPropertyNameDictionary()
+	 * @since 1.1
+	 */
+	protected static String canonicalPropertyName(String name) {
+		return PROPERTY_NAMES.canonicalKey(name);
+	}
+
+	/**
+	 * Get the canonical instance of a property name, without adding the name
+	 * to the dictionary.
+	 * 
+	 * <p>
+	 * This should be used for property names from untrusted input.
+	 * </p>
+	 * 
+	 * @param name
+	 *        the property name
+	 * @return the canonical property name, or {@code name} if not in the
+	 *         dictionary
+	 * @see #getPropertyNameDictionary()
+	 * @since 1.1
+	 */
+	protected static String existingPropertyName(String name) {
+		return PROPERTY_NAMES.existingCanonicalKey(name);
+	}
+
 	/**
 	 * Get a String value out of a Map. If the key exists but is not a String,
 	 * {@link Object#toString()} will be called on that object.
@@ -204,6 +276,90 @@ public abstract class GeneralDatumSupport implements Serializable {
 		}
 	}
 
+	/**
+	 * Get a primitive double value out of a Map. If the key exists and is a
+	 * Number, {@link Number#doubleValue()} will be returned. If the map is a
+	 * {@link CompactSampleMap} the value is read directly from its primitive
+	 * storage via {@link CompactSampleMap#getDoubleValue(String, double)}, which
+	 * does not allocate for typical values. For other maps no objects are
+	 * allocated for primitive wrapper values such as {@link Integer} or
+	 * {@link Double}, but other {@link Number} types may allocate when
+	 * converted (for example a {@link BigDecimal} with a non-zero scale), and
+	 * non-number values are parsed from their string form.
+	 * 
+	 * @param key
+	 *        the key of the object to get
+	 * @param map
+	 *        the map to inspect, <em>null</em> is allowed
+	 * @param defaultValue
+	 *        the value to return if the key is not found or cannot be
+	 *        converted
+	 * @return the value, or {@code defaultValue} if not found
+	 * @since 1.1
+	 */
+	protected double getMapDoubleValue(String key, Map<String, ?> map, double defaultValue) {
+		if ( map == null ) {
+			return defaultValue;
+		}
+		if ( map instanceof CompactSampleMap ) {
+			return ((CompactSampleMap) map).getDoubleValue(key, defaultValue);
+		}
+		Object n = map.get(key);
+		if ( n == null ) {
+			return defaultValue;
+		}
+		if ( n instanceof Number ) {
+			return ((Number) n).doubleValue();
+		}
+		try {
+			return Double.parseDouble(n.toString());
+		} catch ( NumberFormatException e ) {
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Get a primitive long value out of a Map. If the key exists and is a
+	 * Number, {@link Number#longValue()} will be returned. If the map is a
+	 * {@link CompactSampleMap} the value is read directly from its primitive
+	 * storage via {@link CompactSampleMap#getLongValue(String, long)}, which
+	 * does not allocate for typical values. For other maps no objects are
+	 * allocated for primitive wrapper values such as {@link Integer} or
+	 * {@link Double}, but other {@link Number} types may allocate when
+	 * converted (for example a {@link BigDecimal} with a non-zero scale), and
+	 * non-number values are parsed from their string form.
+	 * 
+	 * @param key
+	 *        the key of the object to get
+	 * @param map
+	 *        the map to inspect, <em>null</em> is allowed
+	 * @param defaultValue
+	 *        the value to return if the key is not found or cannot be
+	 *        converted
+	 * @return the value, or {@code defaultValue} if not found
+	 * @since 1.1
+	 */
+	protected long getMapLongValue(String key, Map<String, ?> map, long defaultValue) {
+		if ( map == null ) {
+			return defaultValue;
+		}
+		if ( map instanceof CompactSampleMap ) {
+			return ((CompactSampleMap) map).getLongValue(key, defaultValue);
+		}
+		Object n = map.get(key);
+		if ( n == null ) {
+			return defaultValue;
+		}
+		if ( n instanceof Number ) {
+			return ((Number) n).longValue();
+		}
+		try {
+			return Long.parseLong(n.toString());
+		} catch ( NumberFormatException e ) {
+			return defaultValue;
+		}
+	}
+
 	/**
 	 * Get an array of <em>tags</em>.
 	 * 
@@ -243,6 +399,70 @@ public abstract class GeneralDatumSupport implements Serializable {
 		return (tags != null && tags.contains(tag));
 	}
 
+	/**
+	 * Return <em>true</em> if {@code tags} contains all of the given tags.
+	 * 
+	 * <p>
+	 * If both this object's tags and {@code filter} are {@link TagBitSet}
+	 * instances the test is performed on the tag bitmaps directly.
+	 * </p>
+	 * 
+	 * @param filter
+	 *        the tags to test for
+	 * @return boolean
+	 * @since 1.1
+	 */
+	public boolean hasAllTags(Collection<String> filter) {
+		if ( filter == null || filter.isEmpty() ) {
+			return true;
+		}
+		return (tags != null && tags.containsAll(filter));
+	}
+
+	/**
+	 * Return <em>true</em> if {@code tags} contains any of the given tags.
+	 * 
+	 * <p>
+	 * If both this object's tags and {@code filter} are {@link TagBitSet}
+	 * instances the test is performed on the tag bitmaps directly.
+	 * </p>
+	 * 
+	 * @param filter
+	 *        the tags to test for
+	 * @return boolean
+	 * @since 1.1
+	 */
+	public boolean hasAnyTag(Collection<String> filter) {
+		if ( tags == null || filter == null ) {
+			return false;
+		}
+		if ( tags instanceof TagBitSet && filter instanceof TagBitSet ) {
+			return ((TagBitSet) tags).intersects((TagBitSet) filter);
+		}
+		for ( String tag : filter ) {
+			if ( tags.contains(tag) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create a new set to hold tags.
+	 * 
+	 * <p>
+	 * This method is called by {@link #addTag(String)} when the tag set does
+	 * not exist yet. This implementation returns a new {@link LinkedHashSet}.
+	 * Extending classes can return a {@link TagBitSet} instead.
+	 * </p>
+	 * 
+	 * @return the new set
+	 * @since 1.1
+	 */
+	protected Set<String> createTagSet() {
+		return new LinkedHashSet<String>(2);
+	}
+
 	/**
 	 * Add a tag value.
 	 * 
@@ -255,7 +475,7 @@ public abstract class GeneralDatumSupport implements Serializable {
 		}
 		Set<String> set = tags;
 		if ( set == null ) {
-			set = new LinkedHashSet<String>(2);
+			set = createTagSet();
 			tags = set;
 		}
 		set.add(tag);
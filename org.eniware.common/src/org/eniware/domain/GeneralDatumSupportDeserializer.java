@@ -0,0 +1,337 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.JsonTokenId;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+/**
+ * Base class for streaming {@link GeneralDatumSupport} deserializers that read
+ * JSON tokens directly into datum objects, without binding intermediate maps.
+ *
+ * <p>
+ * By default numbers are created the same way Jackson binds them into a
+ * {@code Map<String, Object>}, honoring the
+ * {@link DeserializationFeature#USE_BIG_DECIMAL_FOR_FLOATS},
+ * {@link DeserializationFeature#USE_BIG_INTEGER_FOR_INTS}, and
+ * {@link DeserializationFeature#USE_LONG_FOR_INTS} features. When
+ * {@code primitiveNumbers} is enabled those features are ignored, and
+ * floating point numbers are parsed as {@link Double} and integers as
+ * {@link Integer} or {@link Long} (integers too large for a {@code long} are
+ * still parsed as {@link java.math.BigInteger}).
+ * </p>
+ *
+ * @param <T>
+ *        the type of object handled
+ * @version 1.0
+ * @since 1.42
+ */
+public abstract class GeneralDatumSupportDeserializer<T extends GeneralDatumSupport>
+		extends StdDeserializer<T> {
+
+	private static final long serialVersionUID = 4015917262430946335L;
+
+	private final boolean primitiveNumbers;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param clazz
+	 *        the class type
+	 * @param primitiveNumbers
+	 *        {@literal true} to parse numbers as primitive {@code double} and
+	 *        {@code long} values
+	 */
+	protected GeneralDatumSupportDeserializer(Class<T> clazz, boolean primitiveNumbers) {
+		super(clazz);
+		this.primitiveNumbers = primitiveNumbers;
+	}
+
+	/**
+	 * Test if numbers are parsed as primitive values.
+	 *
+	 * @return {@literal true} if numbers are parsed as primitive values
+	 */
+	public boolean isPrimitiveNumbers() {
+		return primitiveNumbers;
+	}
+
+	/**
+	 * Position the parser on the first field name of an object.
+	 *
+	 * @param p
+	 *        the parser
+	 * @param ctxt
+	 *        the context
+	 * @return the current token, either {@link JsonToken#FIELD_NAME} or
+	 *         {@link JsonToken#END_OBJECT}
+	 * @throws IOException
+	 *         if the parser is not positioned on an object
+	 */
+	protected JsonToken startObject(JsonParser p, DeserializationContext ctxt) throws IOException {
+		JsonToken t = p.getCurrentToken();
+		if ( t == JsonToken.START_OBJECT ) {
+			t = p.nextToken();
+		}
+		if ( t != JsonToken.FIELD_NAME && t != JsonToken.END_OBJECT ) {
+			ctxt.handleUnexpectedToken(handledType(), p);
+		}
+		return t;
+	}
+
+	/**
+	 * Read a JSON number into a {@link Number}.
+	 *
+	 * <p>
+	 * The parser must be positioned on the number value. Strings are parsed as
+	 * numbers as well.
+	 * </p>
+	 *
+	 * @param p
+	 *        the parser
+	 * @param ctxt
+	 *        the context
+	 * @return the number, or {@literal null} for JSON {@code null} or an empty
+	 *         string
+	 * @throws IOException
+	 *         if the value is not a number
+	 */
+	protected Number readNumber(JsonParser p, DeserializationContext ctxt) throws IOException {
+		switch (p.getCurrentTokenId()) {
+			case JsonTokenId.ID_NUMBER_INT:
+				return intValue(p, ctxt);
+
+			case JsonTokenId.ID_NUMBER_FLOAT:
+				return floatValue(p, ctxt);
+
+			case JsonTokenId.ID_STRING:
+				return parseNumber(p, ctxt, p.getText().trim());
+
+			case JsonTokenId.ID_NULL:
+				return null;
+
+			default:
+				throw JsonMappingException.from(p, "Expected number, got " + p.getCurrentToken());
+		}
+	}
+
+	private Number intValue(JsonParser p, DeserializationContext ctxt) throws IOException {
+		if ( !primitiveNumbers ) {
+			if ( ctxt.isEnabled(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS) ) {
+				return p.getBigIntegerValue();
+			}
+			if ( ctxt.isEnabled(DeserializationFeature.USE_LONG_FOR_INTS)
+					&& p.getNumberType() != JsonParser.NumberType.BIG_INTEGER ) {
+				return p.getLongValue();
+			}
+		}
+		return p.getNumberValue();
+	}
+
+	private Number floatValue(JsonParser p, DeserializationContext ctxt) throws IOException {
+		if ( !primitiveNumbers && ctxt.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS) ) {
+			return p.getDecimalValue();
+		}
+		return p.getDoubleValue();
+	}
+
+	private Number parseNumber(JsonParser p, DeserializationContext ctxt, String text)
+			throws IOException {
+		if ( text.length() == 0 ) {
+			return null;
+		}
+		try {
+			if ( text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0 ) {
+				long l = Long.parseLong(text);
+				if ( l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ) {
+					return (int) l;
+				}
+				return l;
+			}
+			if ( !primitiveNumbers
+					&& ctxt.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS) ) {
+				return new BigDecimal(text);
+			}
+			return Double.valueOf(text);
+		} catch ( NumberFormatException e ) {
+			if ( text.indexOf('.') < 0 ) {
+				try {
+					return new BigDecimal(text).toBigIntegerExact();
+				} catch ( RuntimeException e2 ) {
+					// fall through
+				}
+			}
+			throw JsonMappingException.from(p, "Not a valid number: [" + text + "]", e);
+		}
+	}
+
+	/**
+	 * Read any JSON value.
+	 *
+	 * <p>
+	 * Numbers are read via {@link #readNumber(JsonParser, DeserializationContext)}
+	 * and other scalar values are read directly. Objects and arrays are bound
+	 * by the context as {@link Object}.
+	 * </p>
+	 *
+	 * @param p
+	 *        the parser
+	 * @param ctxt
+	 *        the context
+	 * @return the value, or {@literal null} for JSON {@code null}
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	protected Object readValue(JsonParser p, DeserializationContext ctxt) throws IOException {
+		switch (p.getCurrentTokenId()) {
+			case JsonTokenId.ID_STRING:
+				return p.getText();
+
+			case JsonTokenId.ID_NUMBER_INT:
+				return intValue(p, ctxt);
+
+			case JsonTokenId.ID_NUMBER_FLOAT:
+				return floatValue(p, ctxt);
+
+			case JsonTokenId.ID_TRUE:
+				return Boolean.TRUE;
+
+			case JsonTokenId.ID_FALSE:
+				return Boolean.FALSE;
+
+			case JsonTokenId.ID_NULL:
+				return null;
+
+			default:
+				return ctxt.readValue(p, Object.class);
+		}
+	}
+
+	/**
+	 * Read a JSON object of numbers into a map.
+	 *
+	 * <p>
+	 * Keys are canonicalized via the
+	 * {@link GeneralDatumSupport#getPropertyNameDictionary()}, without adding
+	 * new keys to it. {@literal null} values are skipped.
+	 * </p>
+	 *
+	 * @param p
+	 *        the parser, positioned on the start of the object
+	 * @param ctxt
+	 *        the context
+	 * @param map
+	 *        the map to add values to
+	 * @return {@code map}, or {@literal null} for JSON {@code null}
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	protected Map<String, Number> readNumberMap(JsonParser p, DeserializationContext ctxt,
+			Map<String, Number> map) throws IOException {
+		if ( p.getCurrentToken() == JsonToken.VALUE_NULL ) {
+			return null;
+		}
+		for ( JsonToken t = startObject(p, ctxt); t == JsonToken.FIELD_NAME; t = p.nextToken() ) {
+			String name = GeneralDatumSupport.existingPropertyName(p.getCurrentName());
+			p.nextToken();
+			Number n = readNumber(p, ctxt);
+			if ( n != null ) {
+				map.put(name, n);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Read a JSON object of arbitrary values into a map.
+	 *
+	 * @param p
+	 *        the parser, positioned on the start of the object
+	 * @param ctxt
+	 *        the context
+	 * @param canonicalKeys
+	 *        {@literal true} to canonicalize keys via the
+	 *        {@link GeneralDatumSupport#getPropertyNameDictionary()}, without
+	 *        adding new keys to it
+	 * @return the map, or {@literal null} for JSON {@code null}
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	protected Map<String, Object> readObjectMap(JsonParser p, DeserializationContext ctxt,
+			boolean canonicalKeys) throws IOException {
+		if ( p.getCurrentToken() == JsonToken.VALUE_NULL ) {
+			return null;
+		}
+		Map<String, Object> map = new LinkedHashMap<String, Object>(8);
+		for ( JsonToken t = startObject(p, ctxt); t == JsonToken.FIELD_NAME; t = p.nextToken() ) {
+			String name = p.getCurrentName();
+			if ( canonicalKeys ) {
+				name = GeneralDatumSupport.existingPropertyName(name);
+			}
+			p.nextToken();
+			map.put(name, readValue(p, ctxt));
+		}
+		return map;
+	}
+
+	/**
+	 * Read a JSON array of strings into the tags of a datum object.
+	 *
+	 * <p>
+	 * When the tag set created by the datum is a {@link TagBitSet}, the tags
+	 * are added without adding them to the tag dictionary.
+	 * </p>
+	 *
+	 * @param p
+	 *        the parser, positioned on the start of the array
+	 * @param ctxt
+	 *        the context
+	 * @param datum
+	 *        the object to set the tags on
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	protected void readTags(JsonParser p, DeserializationContext ctxt, GeneralDatumSupport datum)
+			throws IOException {
+		JsonToken t = p.getCurrentToken();
+		if ( t == JsonToken.VALUE_NULL ) {
+			datum.setTags(null);
+			return;
+		}
+		if ( t != JsonToken.START_ARRAY ) {
+			ctxt.handleUnexpectedToken(Set.class, p);
+		}
+		Set<String> tags = datum.createTagSet();
+		TagBitSet tagBits = (tags instanceof TagBitSet ? (TagBitSet) tags : null);
+		while ( (t = p.nextToken()) != JsonToken.END_ARRAY ) {
+			if ( t == JsonToken.VALUE_NULL ) {
+				continue;
+			}
+			if ( !t.isScalarValue() ) {
+				ctxt.handleUnexpectedToken(String.class, p);
+			}
+			if ( tagBits != null ) {
+				tagBits.add(p.getText(), false);
+			} else {
+				tags.add(p.getText());
+			}
+		}
+		datum.setTags(tags);
+	}
+
+}
@@ -0,0 +1,147 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eniware.util.SerializeIgnore;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * An immutable snapshot of a {@link GeneralDatumMetadata}.
+ *
+ * <p>
+ * Creating a snapshot does not copy the metadata maps: the snapshot exposes
+ * unmodifiable views of the maps it was created from, and the original
+ * metadata copies a map (and only the affected property map within it) before
+ * it next modifies it. A snapshot can therefore be taken after every update at
+ * little cost, and once safely published can be read by any number of threads
+ * without locking: reading a snapshot, or copying or merging from one, never
+ * writes to it. All methods that would modify the snapshot throw
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @version 1.1
+ * @since 1.42
+ */
+public class ImmutableGeneralDatumMetadata extends GeneralDatumMetadata implements Serializable {
+
+	private static final long serialVersionUID = 6240963127446916187L;
+
+	/**
+	 * Construct a snapshot of another metadata instance.
+	 *
+	 * <p>
+	 * {@code other} must not be modified concurrently with this constructor.
+	 * </p>
+	 *
+	 * @param other
+	 *        the metadata to take a snapshot of
+	 */
+	public ImmutableGeneralDatumMetadata(GeneralDatumMetadata other) {
+		super(other instanceof ImmutableGeneralDatumMetadata ? other.infoForReading()
+				: unmodifiableInfo(other.shareInfo()),
+				other instanceof ImmutableGeneralDatumMetadata ? other.propertyInfoForReading()
+						: unmodifiablePropertyInfo(other.sharePropertyInfo()));
+		if ( other.getTags() != null ) {
+			super.setTags(Collections.unmodifiableSet(new LinkedHashSet<String>(other.getTags())));
+		}
+	}
+
+	private static Map<String, Object> unmodifiableInfo(Map<String, Object> info) {
+		return (info == null ? null : Collections.unmodifiableMap(info));
+	}
+
+	private static Map<String, Map<String, Object>> unmodifiablePropertyInfo(
+			Map<String, Map<String, Object>> propertyInfo) {
+		if ( propertyInfo == null ) {
+			return null;
+		}
+		Map<String, Map<String, Object>> result = new LinkedHashMap<String, Map<String, Object>>(
+				propertyInfo.size());
+		for ( Map.Entry<String, Map<String, Object>> me : propertyInfo.entrySet() ) {
+			result.put(me.getKey(),
+					me.getValue() == null ? null : Collections.unmodifiableMap(me.getValue()));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	private static UnsupportedOperationException immutable() {
+		return new UnsupportedOperationException("Metadata snapshots cannot be modified.");
+	}
+
+	/**
+	 * Get the unmodifiable info map.
+	 * 
+	 * @return the info map
+	 */
+	@Override
+	@JsonIgnore
+	@SerializeIgnore
+	public Map<String, Object> getInfo() {
+		return infoForReading();
+	}
+
+	/**
+	 * Get the unmodifiable property info map.
+	 * 
+	 * @return the property info map
+	 */
+	@Override
+	@JsonIgnore
+	@SerializeIgnore
+	public Map<String, Map<String, Object>> getPropertyInfo() {
+		return propertyInfoForReading();
+	}
+
+	@Override
+	public void merge(GeneralDatumMetadata meta, boolean replace) {
+		throw immutable();
+	}
+
+	@Override
+	public void putInfoValue(String key, Object value) {
+		throw immutable();
+	}
+
+	@Override
+	public void putInfoValue(String property, String key, Object value) {
+		throw immutable();
+	}
+
+	@Override
+	public void setInfo(Map<String, Object> info) {
+		throw immutable();
+	}
+
+	@Override
+	public void setPropertyInfo(Map<String, Map<String, Object>> propertyInfo) {
+		throw immutable();
+	}
+
+	@Override
+	public void setTags(Set<String> tags) {
+		throw immutable();
+	}
+
+	@Override
+	public void addTag(String tag) {
+		throw immutable();
+	}
+
+	@Override
+	public void removeTag(String tag) {
+		throw immutable();
+	}
+
+}
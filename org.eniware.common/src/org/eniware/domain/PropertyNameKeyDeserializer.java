@@ -0,0 +1,29 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.IOException;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.KeyDeserializer;
+
+/**
+ * {@link KeyDeserializer} for datum property name map keys, which returns the
+ * canonical instance of each key from
+ * {@link GeneralDatumSupport#getPropertyNameDictionary()}. Keys not already in
+ * the dictionary are returned as-is, and are not added to it.
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class PropertyNameKeyDeserializer extends KeyDeserializer {
+
+	@Override
+	public Object deserializeKey(String key, DeserializationContext ctxt) throws IOException {
+		return GeneralDatumSupport.getPropertyNameDictionary().existingCanonicalKey(key);
+	}
+
+}
@@ -0,0 +1,615 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.domain;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.eniware.util.KeyDictionary;
+
+/**
+ * A set of tags stored as a sparse bitmap of tag IDs.
+ *
+ * <p>
+ * Each tag is assigned an ID by the process-wide
+ * {@link GeneralDatumSupport#getTagDictionary()}, and membership is stored as a
+ * single bit per ID. Only the non-zero 64-bit words of the bitmap are stored,
+ * along with their sorted word indexes, so a set holds one word per 64-ID range
+ * it has tags in no matter how large the dictionary grows. Testing for a tag is
+ * a dictionary lookup and bit test, and comparing two bitmap sets via
+ * {@link #containsAll(Collection)}, {@link #intersects(TagBitSet)},
+ * {@link #addAll(Collection)}, {@link #retainAll(Collection)}, or
+ * {@link #removeAll(Collection)} is done 64 tags at a time.
+ * </p>
+ *
+ * <p>
+ * Tags without a dictionary ID are kept in an ordinary overflow set. Tags
+ * added via {@link #add(String)} are added to the dictionary if space allows,
+ * but tags added via {@link #add(String, boolean)} without interning, such as
+ * the tags in sets created by {@link #of(String...)}, only use an existing ID,
+ * so query and filter sets never fill the dictionary with arbitrary tags.
+ * Comparisons involving overflow tags fall back to comparing tag by tag.
+ * </p>
+ *
+ * <p>
+ * Iteration returns the tags with IDs first, in dictionary ID order (which is
+ * the order tags were first seen by the process rather than the order they
+ * were added to this set), followed by overflow tags. This set does not allow
+ * {@literal null} tags. This class is <b>not</b> thread-safe.
+ * </p>
+ *
+ * @version 1.1
+ * @since 1.42
+ */
+public class TagBitSet extends AbstractSet<String> implements Serializable {
+
+	private static final long serialVersionUID = -1731498946260471953L;
+
+	private static final long[] EMPTY = new long[0];
+	private static final int[] EMPTY_INDEXES = new int[0];
+
+	// sorted word indexes, and the matching non-zero words
+	private transient int[] indexes = EMPTY_INDEXES;
+	private transient long[] words = EMPTY;
+	private transient Set<String> overflow;
+	private transient int modCount;
+	private boolean readOnly;
+
+	/**
+	 * Default constructor.
+	 */
+	public TagBitSet() {
+		super();
+	}
+
+	/**
+	 * Construct with tags.
+	 *
+	 * @param tags
+	 *        the tags to add
+	 */
+	public TagBitSet(Collection<String> tags) {
+		super();
+		if ( tags != null ) {
+			addAll(tags);
+		}
+	}
+
+	/**
+	 * Create a set from a list of tags, without adding any tags to the
+	 * dictionary.
+	 *
+	 * <p>
+	 * This is useful for creating a set of tags to filter datum by, via
+	 * {@link GeneralDatumSupport#hasAllTags(Collection)} or
+	 * {@link GeneralDatumSupport#hasAnyTag(Collection)}.
+	 * </p>
+	 *
+	 * @param tags
+	 *        the tags
+	 * @return the new set
+	 */
+	public static TagBitSet of(String... tags) {
+		TagBitSet result = new TagBitSet();
+		if ( tags != null ) {
+			for ( String tag : tags ) {
+				result.add(tag, false);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Get an unmodifiable copy of this set.
+	 *
+	 * <p>
+	 * Unlike {@link java.util.Collections#unmodifiableSet(Set)}, the returned
+	 * set still supports the bitmap comparison methods.
+	 * </p>
+	 *
+	 * @return the new, unmodifiable set
+	 */
+	public TagBitSet toUnmodifiable() {
+		TagBitSet result = new TagBitSet(this);
+		result.readOnly = true;
+		return result;
+	}
+
+	private static KeyDictionary dictionary() {
+		return GeneralDatumSupport.getTagDictionary();
+	}
+
+	private void assertWritable() {
+		if ( readOnly ) {
+			throw new UnsupportedOperationException("The tag set cannot be modified.");
+		}
+	}
+
+	private boolean hasOverflow() {
+		return (overflow != null && !overflow.isEmpty());
+	}
+
+	private boolean testBit(int id) {
+		int i = Arrays.binarySearch(indexes, id >>> 6);
+		return (i >= 0 && (words[i] & (1L << id)) != 0);
+	}
+
+	private boolean setBit(int id) {
+		final int w = id >>> 6;
+		final long bit = 1L << id;
+		int i = Arrays.binarySearch(indexes, w);
+		if ( i >= 0 ) {
+			if ( (words[i] & bit) != 0 ) {
+				return false;
+			}
+			words[i] |= bit;
+			return true;
+		}
+		i = -(i + 1);
+		final int n = indexes.length;
+		int[] newIndexes = new int[n + 1];
+		long[] newWords = new long[n + 1];
+		System.arraycopy(indexes, 0, newIndexes, 0, i);
+		System.arraycopy(words, 0, newWords, 0, i);
+		newIndexes[i] = w;
+		newWords[i] = bit;
+		System.arraycopy(indexes, i, newIndexes, i + 1, n - i);
+		System.arraycopy(words, i, newWords, i + 1, n - i);
+		indexes = newIndexes;
+		words = newWords;
+		return true;
+	}
+
+	private boolean clearBit(int id) {
+		int i = Arrays.binarySearch(indexes, id >>> 6);
+		if ( i < 0 ) {
+			return false;
+		}
+		final long bit = 1L << id;
+		if ( (words[i] & bit) == 0 ) {
+			return false;
+		}
+		words[i] &= ~bit;
+		if ( words[i] == 0 ) {
+			// drop the empty word
+			final int n = indexes.length - 1;
+			int[] newIndexes = new int[n];
+			long[] newWords = new long[n];
+			System.arraycopy(indexes, 0, newIndexes, 0, i);
+			System.arraycopy(words, 0, newWords, 0, i);
+			System.arraycopy(indexes, i + 1, newIndexes, i, n - i);
+			System.arraycopy(words, i + 1, newWords, i, n - i);
+			indexes = newIndexes;
+			words = newWords;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if ( !(o instanceof String) ) {
+			return false;
+		}
+		int id = dictionary().existingIdFor((String) o);
+		if ( id >= 0 && testBit(id) ) {
+			return true;
+		}
+		// the tag may have been added before it was assigned an ID
+		return (overflow != null && overflow.contains(o));
+	}
+
+	/**
+	 * Add a tag, adding it to the dictionary if not already present and space
+	 * allows.
+	 *
+	 * @param tag
+	 *        the tag to add
+	 * @return <em>true</em> if the tag was added
+	 */
+	@Override
+	public boolean add(String tag) {
+		return add(tag, true);
+	}
+
+	/**
+	 * Add a tag.
+	 *
+	 * @param tag
+	 *        the tag to add
+	 * @param intern
+	 *        <em>true</em> to add the tag to the dictionary if not already
+	 *        present, <em>false</em> to only use an existing dictionary ID and
+	 *        otherwise keep the tag in the overflow set; tags from untrusted
+	 *        input should not be interned
+	 * @return <em>true</em> if the tag was added
+	 */
+	public boolean add(String tag, boolean intern) {
+		if ( tag == null ) {
+			throw new IllegalArgumentException("The tag must be provided.");
+		}
+		assertWritable();
+		int id = (intern ? dictionary().idFor(tag) : dictionary().existingIdFor(tag));
+		if ( id < 0 ) {
+			if ( overflow == null ) {
+				overflow = new LinkedHashSet<String>(2);
+			}
+			if ( overflow.add(tag) ) {
+				modCount++;
+				return true;
+			}
+			return false;
+		}
+		if ( overflow != null && overflow.remove(tag) ) {
+			// the tag has since been assigned an ID, so move it to the bitmap
+			setBit(id);
+			modCount++;
+			return false;
+		}
+		if ( !setBit(id) ) {
+			return false;
+		}
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		assertWritable();
+		if ( !(o instanceof String) ) {
+			return false;
+		}
+		int id = dictionary().existingIdFor((String) o);
+		if ( id >= 0 && clearBit(id) ) {
+			modCount++;
+			return true;
+		}
+		if ( overflow != null && overflow.remove(o) ) {
+			modCount++;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		assertWritable();
+		indexes = EMPTY_INDEXES;
+		words = EMPTY;
+		overflow = null;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		int n = 0;
+		for ( long w : words ) {
+			n += Long.bitCount(w);
+		}
+		return (overflow != null ? n + overflow.size() : n);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return (words.length == 0 && !hasOverflow());
+	}
+
+	/**
+	 * Test if this set contains any of the tags in another set.
+	 *
+	 * @param other
+	 *        the set to compare to
+	 * @return <em>true</em> if the two sets have at least one tag in common
+	 */
+	public boolean intersects(TagBitSet other) {
+		final int[] a = indexes;
+		final int[] b = other.indexes;
+		for ( int i = 0, j = 0; i < a.length && j < b.length; ) {
+			if ( a[i] < b[j] ) {
+				i++;
+			} else if ( a[i] > b[j] ) {
+				j++;
+			} else {
+				if ( (words[i] & other.words[j]) != 0 ) {
+					return true;
+				}
+				i++;
+				j++;
+			}
+		}
+		if ( other.hasOverflow() ) {
+			for ( String tag : other.overflow ) {
+				if ( contains(tag) ) {
+					return true;
+				}
+			}
+		}
+		if ( hasOverflow() ) {
+			for ( String tag : overflow ) {
+				if ( other.contains(tag) ) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		if ( !(c instanceof TagBitSet) || hasOverflow() || ((TagBitSet) c).hasOverflow() ) {
+			return super.containsAll(c);
+		}
+		TagBitSet other = (TagBitSet) c;
+		final int[] a = indexes;
+		final int[] b = other.indexes;
+		int i = 0;
+		for ( int j = 0; j < b.length; j++ ) {
+			while ( i < a.length && a[i] < b[j] ) {
+				i++;
+			}
+			if ( i >= a.length || a[i] != b[j] || (words[i] & other.words[j]) != other.words[j] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends String> c) {
+		if ( !(c instanceof TagBitSet) ) {
+			return super.addAll(c);
+		}
+		assertWritable();
+		TagBitSet other = (TagBitSet) c;
+		final int[] a = indexes;
+		final int[] b = other.indexes;
+		int[] newIndexes = new int[a.length + b.length];
+		long[] newWords = new long[a.length + b.length];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		boolean changed = false;
+		while ( i < a.length || j < b.length ) {
+			if ( j >= b.length || (i < a.length && a[i] < b[j]) ) {
+				newIndexes[n] = a[i];
+				newWords[n++] = words[i++];
+			} else if ( i >= a.length || a[i] > b[j] ) {
+				newIndexes[n] = b[j];
+				newWords[n++] = other.words[j++];
+				changed = true;
+			} else {
+				long w = words[i] | other.words[j];
+				if ( w != words[i] ) {
+					changed = true;
+				}
+				newIndexes[n] = a[i];
+				newWords[n++] = w;
+				i++;
+				j++;
+			}
+		}
+		if ( changed ) {
+			indexes = Arrays.copyOf(newIndexes, n);
+			words = Arrays.copyOf(newWords, n);
+			modCount++;
+		}
+		if ( other.hasOverflow() ) {
+			for ( String tag : other.overflow ) {
+				// don't intern tags the other set did not
+				changed |= add(tag, false);
+			}
+		}
+		return changed;
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		if ( !(c instanceof TagBitSet) || hasOverflow() || ((TagBitSet) c).hasOverflow() ) {
+			return super.retainAll(c);
+		}
+		assertWritable();
+		TagBitSet other = (TagBitSet) c;
+		final int[] a = indexes;
+		final int[] b = other.indexes;
+		int[] newIndexes = new int[a.length];
+		long[] newWords = new long[a.length];
+		int n = 0;
+		int j = 0;
+		for ( int i = 0; i < a.length; i++ ) {
+			while ( j < b.length && b[j] < a[i] ) {
+				j++;
+			}
+			if ( j < b.length && b[j] == a[i] ) {
+				long w = words[i] & other.words[j];
+				if ( w != 0 ) {
+					newIndexes[n] = a[i];
+					newWords[n++] = w;
+				}
+			}
+		}
+		return replaceWords(newIndexes, newWords, n);
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		if ( !(c instanceof TagBitSet) || hasOverflow() || ((TagBitSet) c).hasOverflow() ) {
+			return super.removeAll(c);
+		}
+		assertWritable();
+		TagBitSet other = (TagBitSet) c;
+		final int[] a = indexes;
+		final int[] b = other.indexes;
+		int[] newIndexes = new int[a.length];
+		long[] newWords = new long[a.length];
+		int n = 0;
+		int j = 0;
+		for ( int i = 0; i < a.length; i++ ) {
+			while ( j < b.length && b[j] < a[i] ) {
+				j++;
+			}
+			long w = (j < b.length && b[j] == a[i] ? words[i] & ~other.words[j] : words[i]);
+			if ( w != 0 ) {
+				newIndexes[n] = a[i];
+				newWords[n++] = w;
+			}
+		}
+		return replaceWords(newIndexes, newWords, n);
+	}
+
+	private boolean replaceWords(int[] newIndexes, long[] newWords, int n) {
+		// the new words are a subset of the current words, so when no word was
+		// dropped the indexes are unchanged and only the words need comparing
+		if ( n == indexes.length ) {
+			int i = 0;
+			while ( i < n && newWords[i] == words[i] ) {
+				i++;
+			}
+			if ( i == n ) {
+				return false;
+			}
+		}
+		indexes = Arrays.copyOf(newIndexes, n);
+		words = Arrays.copyOf(newWords, n);
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if ( o == this ) {
+			return true;
+		}
+		if ( !(o instanceof TagBitSet) || hasOverflow() || ((TagBitSet) o).hasOverflow() ) {
+			return super.equals(o);
+		}
+		TagBitSet other = (TagBitSet) o;
+		// no zero words are stored, so equal sets have equal arrays
+		return (Arrays.equals(indexes, other.indexes) && Arrays.equals(words, other.words));
+	}
+
+	@Override
+	public int hashCode() {
+		// must match AbstractSet.hashCode() so equals() is symmetric with other sets
+		return super.hashCode();
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new TagIterator();
+	}
+
+	private final class TagIterator implements Iterator<String> {
+
+		private final Iterator<String> overflowIterator = (overflow != null ? overflow.iterator()
+				: null);
+		private int expectedModCount = modCount;
+		private int nextId = nextSetBit(0);
+		private String last;
+		private boolean lastOverflow;
+
+		private int nextSetBit(int from) {
+			// search by ID, as removing a tag can remove a word
+			int i = Arrays.binarySearch(indexes, from >>> 6);
+			long word;
+			if ( i >= 0 ) {
+				word = words[i] & (-1L << from);
+			} else {
+				i = -(i + 1);
+				if ( i >= indexes.length ) {
+					return -1;
+				}
+				word = words[i];
+			}
+			while ( true ) {
+				if ( word != 0 ) {
+					return (indexes[i] << 6) + Long.numberOfTrailingZeros(word);
+				}
+				if ( ++i >= indexes.length ) {
+					return -1;
+				}
+				word = words[i];
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return (nextId >= 0 || (overflowIterator != null && overflowIterator.hasNext()));
+		}
+
+		@Override
+		public String next() {
+			if ( modCount != expectedModCount ) {
+				throw new ConcurrentModificationException();
+			}
+			if ( nextId >= 0 ) {
+				last = dictionary().keyFor(nextId);
+				lastOverflow = false;
+				nextId = nextSetBit(nextId + 1);
+				return last;
+			}
+			if ( overflowIterator != null && overflowIterator.hasNext() ) {
+				last = overflowIterator.next();
+				lastOverflow = true;
+				return last;
+			}
+			throw new NoSuchElementException();
+		}
+
+		@Override
+		public void remove() {
+			if ( last == null ) {
+				throw new IllegalStateException();
+			}
+			if ( modCount != expectedModCount ) {
+				throw new ConcurrentModificationException();
+			}
+			assertWritable();
+			if ( lastOverflow ) {
+				overflowIterator.remove();
+				modCount++;
+			} else {
+				TagBitSet.this.remove(last);
+			}
+			expectedModCount = modCount;
+			last = null;
+		}
+
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		// tag IDs are specific to this process, so write the tags themselves
+		out.defaultWriteObject();
+		out.writeInt(size());
+		for ( String tag : this ) {
+			out.writeUTF(tag);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		indexes = EMPTY_INDEXES;
+		words = EMPTY;
+		boolean ro = readOnly;
+		readOnly = false;
+		int n = in.readInt();
+		for ( int i = 0; i < n; i++ ) {
+			// serialized data is not trusted, so do not intern
+			add(in.readUTF(), false);
+		}
+		readOnly = ro;
+	}
+
+}
@@ -0,0 +1,192 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eniware.domain.BasicLocation;
+import org.eniware.domain.BasicNetworkIdentity;
+import org.eniware.domain.BasicRegistrationReceipt;
+import org.eniware.domain.NetworkAssociationDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBuilder;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.module.afterburner.deser.DeserializerModifier;
+import com.fasterxml.jackson.module.afterburner.ser.SerializerModifier;
+
+/**
+ * Jackson {@link Module} that replaces reflection-based property access with
+ * generated accessor classes, for a specific set of bean types.
+ *
+ * <p>
+ * This uses the Jackson Afterburner bytecode generator, but only for the
+ * configured {@code types} rather than every bean the mapper handles. The
+ * accessor classes are defined in the class loader of the bean they access,
+ * so in OSGi each configured type must come from a bundle that imports the
+ * {@code com.fasterxml.jackson.module.afterburner.ser} and
+ * {@code com.fasterxml.jackson.module.afterburner.deser} packages, as this
+ * bundle does for the {@link #DEFAULT_TYPES}. If an accessor cannot be
+ * generated or loaded for a type, the type falls back to normal reflection
+ * access. Register this module with a mapper, for example via the
+ * {@code modules} property of {@link ObjectMapperFactoryBean}.
+ * </p>
+ *
+ * <p>
+ * The configurable properties of this class are:
+ * </p>
+ *
+ * <dl class="class-properties">
+ * <dt>types</dt>
+ * <dd>The bean types to generate accessors for. Defaults to
+ * {@link #DEFAULT_TYPES}.</dd>
+ *
+ * <dt>optimizedBeanDeserializer</dt>
+ * <dd>If {@literal true} then also use the optimized Afterburner bean
+ * deserializer for the configured types. Defaults to {@literal true}.</dd>
+ * </dl>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class BeanAccessorModule extends Module {
+
+	/** The default value for the {@code types} property. */
+	public static final List<Class<?>> DEFAULT_TYPES = Collections
+			.unmodifiableList(Arrays.<Class<?>> asList(BasicLocation.class,
+					BasicNetworkIdentity.class, NetworkAssociationDetails.class,
+					BasicRegistrationReceipt.class));
+
+	private static final Logger LOG = LoggerFactory.getLogger(BeanAccessorModule.class);
+
+	private Set<Class<?>> types = new LinkedHashSet<Class<?>>(DEFAULT_TYPES);
+	private boolean optimizedBeanDeserializer = true;
+
+	@Override
+	public String getModuleName() {
+		return "EniwareBeanAccessorModule";
+	}
+
+	@Override
+	public Version version() {
+		return new Version(1, 0, 0, null, null, null);
+	}
+
+	@Override
+	public void setupModule(SetupContext context) {
+		final Set<Class<?>> t = Collections.unmodifiableSet(new LinkedHashSet<Class<?>>(types));
+		// a null class loader means accessors are defined in each bean's own class loader
+		context.addBeanSerializerModifier(new TypeSerializerModifier(t, new SerializerModifier(null)));
+		context.addBeanDeserializerModifier(new TypeDeserializerModifier(t,
+				new DeserializerModifier(null, optimizedBeanDeserializer)));
+	}
+
+	private static final class TypeSerializerModifier extends BeanSerializerModifier {
+
+		private final Set<Class<?>> types;
+		private final BeanSerializerModifier delegate;
+
+		private TypeSerializerModifier(Set<Class<?>> types, BeanSerializerModifier delegate) {
+			super();
+			this.types = types;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public List<BeanPropertyWriter> changeProperties(SerializationConfig config,
+				BeanDescription beanDesc, List<BeanPropertyWriter> beanProperties) {
+			if ( !types.contains(beanDesc.getBeanClass()) ) {
+				return beanProperties;
+			}
+			try {
+				return delegate.changeProperties(config, beanDesc, beanProperties);
+			} catch ( LinkageError e ) {
+				LOG.warn("Unable to generate JSON accessors for {}, using reflection: {}",
+						beanDesc.getBeanClass().getName(), e.toString());
+			} catch ( RuntimeException e ) {
+				LOG.warn("Unable to generate JSON accessors for {}, using reflection: {}",
+						beanDesc.getBeanClass().getName(), e.toString());
+			}
+			return beanProperties;
+		}
+
+	}
+
+	private static final class TypeDeserializerModifier extends BeanDeserializerModifier {
+
+		private final Set<Class<?>> types;
+		private final BeanDeserializerModifier delegate;
+
+		private TypeDeserializerModifier(Set<Class<?>> types, BeanDeserializerModifier delegate) {
+			super();
+			this.types = types;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public BeanDeserializerBuilder updateBuilder(DeserializationConfig config,
+				BeanDescription beanDesc, BeanDeserializerBuilder builder) {
+			if ( !types.contains(beanDesc.getBeanClass()) ) {
+				return builder;
+			}
+			try {
+				return delegate.updateBuilder(config, beanDesc, builder);
+			} catch ( LinkageError e ) {
+				LOG.warn("Unable to generate JSON mutators for {}, using reflection: {}",
+						beanDesc.getBeanClass().getName(), e.toString());
+			} catch ( RuntimeException e ) {
+				LOG.warn("Unable to generate JSON mutators for {}, using reflection: {}",
+						beanDesc.getBeanClass().getName(), e.toString());
+			}
+			return builder;
+		}
+
+	}
+
+	public Set<Class<?>> getTypes() {
+		return types;
+	}
+
+	/**
+	 * Set the bean types to generate accessors for.
+	 *
+	 * @param types
+	 *        the types
+	 */
+	public void setTypes(Collection<Class<?>> types) {
+		this.types = (types == null ? new LinkedHashSet<Class<?>>(0)
+				: new LinkedHashSet<Class<?>>(types));
+	}
+
+	public boolean isOptimizedBeanDeserializer() {
+		return optimizedBeanDeserializer;
+	}
+
+	/**
+	 * Set the flag to use the optimized bean deserializer.
+	 *
+	 * @param optimizedBeanDeserializer
+	 *        {@literal true} to use the optimized bean deserializer for the
+	 *        configured types
+	 */
+	public void setOptimizedBeanDeserializer(boolean optimizedBeanDeserializer) {
+		this.optimizedBeanDeserializer = optimizedBeanDeserializer;
+	}
+
+}
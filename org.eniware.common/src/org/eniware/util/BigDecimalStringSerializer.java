@@ -21,7 +21,12 @@ import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 /**
  * Specialized serializer of {@link BigDecimal} to string values.
  * 
- * @version 1.0
+ * <p>
+ * See {@link FastBigDecimalStringSerializer} for a variation that avoids
+ * creating intermediate {@code String} objects.
+ * </p>
+ * 
+ * @version 1.1
  * @since 1.37
  */
 public class BigDecimalStringSerializer extends StdSerializer<BigDecimal> {
@@ -59,11 +64,8 @@ public class BigDecimalStringSerializer extends StdSerializer<BigDecimal> {
 
 	@Override
 	public boolean isEmpty(SerializerProvider prov, BigDecimal value) {
-		if ( value == null ) {
-			return true;
-		}
-		String str = value.toString();
-		return str.isEmpty();
+		// a BigDecimal string is never empty
+		return (value == null);
 	}
 
 	@Override
@@ -0,0 +1,150 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.util;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Serializer of {@link BigDecimal} to plain string values that formats digits
+ * directly into a character buffer.
+ *
+ * <p>
+ * The output is the same as {@link BigDecimal#toPlainString()}. Values with
+ * up to 18 digits of precision and a scale no larger than
+ * {@link #MAX_FAST_SCALE} (in either direction) are formatted from their
+ * unscaled {@code long} value into a reusable per-thread buffer, which is then
+ * passed to {@link JsonGenerator#writeString(char[], int, int)} without
+ * creating any {@code String}. Other values fall back to
+ * {@link BigDecimal#toPlainString()}. This serializer can be used anywhere
+ * {@link BigDecimalStringSerializer#INSTANCE} is.
+ * </p>
+ *
+ * <p>
+ * Values with a scale of {@literal 0} are formatted without allocating any
+ * objects. For other scales, reading the unscaled {@code long} requires one
+ * small intermediate {@link BigDecimal} (via
+ * {@link BigDecimal#scaleByPowerOfTen(int)}). That is still less than
+ * {@link BigDecimal#unscaledValue()}, which allocates a
+ * {@link java.math.BigInteger} and its magnitude array.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class FastBigDecimalStringSerializer extends BigDecimalStringSerializer {
+
+	private static final long serialVersionUID = -2180718906587624013L;
+
+	/**
+	 * The maximum absolute scale formatted without creating a {@code String}.
+	 */
+	public static final int MAX_FAST_SCALE = 32;
+
+	/** The maximum precision of an unscaled value that fits in a long. */
+	private static final int MAX_FAST_PRECISION = 18;
+
+	/** Enough for a sign, digits, decimal point, and leading/trailing zeros. */
+	private static final int BUFFER_SIZE = 64;
+
+	private static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+
+		@Override
+		protected char[] initialValue() {
+			return new char[BUFFER_SIZE];
+		}
+
+	};
+
+	/**
+	 * Singleton instance to use.
+	 */
+	public final static FastBigDecimalStringSerializer INSTANCE = new FastBigDecimalStringSerializer();
+
+	/**
+	 * Default constructor.
+	 */
+	public FastBigDecimalStringSerializer() {
+		super();
+	}
+
+	/**
+	 * Construct with specific class.
+	 *
+	 * @param handledType
+	 *        the type to use
+	 */
+	public FastBigDecimalStringSerializer(Class<? extends BigDecimal> handledType) {
+		super(handledType);
+	}
+
+	@Override
+	public void serialize(BigDecimal value, JsonGenerator gen, SerializerProvider provider)
+			throws IOException {
+		final int scale = value.scale();
+		if ( scale > MAX_FAST_SCALE || scale < -MAX_FAST_SCALE
+				|| value.precision() > MAX_FAST_PRECISION ) {
+			gen.writeString(value.toPlainString());
+			return;
+		}
+		// longValue() is exact and allocation-free for a scale of 0
+		final long unscaled = (scale == 0 ? value.longValue()
+				: value.scaleByPowerOfTen(scale).longValue());
+		final char[] buf = BUFFER.get();
+		final int start = formatPlain(unscaled, scale, buf);
+		gen.writeString(buf, start, buf.length - start);
+	}
+
+	/**
+	 * Format an unscaled value and scale as a plain decimal string.
+	 *
+	 * <p>
+	 * Characters are written backwards, ending at the end of {@code buf}.
+	 * </p>
+	 *
+	 * @param unscaled
+	 *        the unscaled value; must not be {@link Long#MIN_VALUE}
+	 * @param scale
+	 *        the scale
+	 * @param buf
+	 *        the buffer to write to; must be large enough for the result
+	 * @return the index in {@code buf} of the first character written
+	 */
+	static int formatPlain(long unscaled, int scale, char[] buf) {
+		final boolean neg = (unscaled < 0);
+		long u = (neg ? -unscaled : unscaled);
+		int pos = buf.length;
+		if ( scale > 0 ) {
+			// fraction digits, including any leading zeros
+			for ( int i = 0; i < scale; i++ ) {
+				buf[--pos] = (char) ('0' + (int) (u % 10));
+				u /= 10;
+			}
+			buf[--pos] = '.';
+			if ( u == 0 ) {
+				buf[--pos] = '0';
+			}
+		} else if ( u == 0 ) {
+			buf[--pos] = '0';
+		} else {
+			for ( int i = scale; i < 0; i++ ) {
+				buf[--pos] = '0';
+			}
+		}
+		while ( u != 0 ) {
+			buf[--pos] = (char) ('0' + (int) (u % 10));
+			u /= 10;
+		}
+		if ( neg ) {
+			buf[--pos] = '-';
+		}
+		return pos;
+	}
+
+}
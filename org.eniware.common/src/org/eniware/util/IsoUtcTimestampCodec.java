@@ -0,0 +1,226 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.util;
+
+import java.util.TimeZone;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Fixed-width codec for UTC timestamps in the form
+ * <code>yyyy-MM-dd HH:mm:ss.SSS'Z'</code> or
+ * <code>yyyy-MM-dd'T'HH:mm:ss.SSS'Z'</code>.
+ *
+ * <p>
+ * Timestamps are formatted from and parsed to epoch milliseconds with plain
+ * integer arithmetic on a character array, using the proleptic Gregorian
+ * calendar (the same as Joda's ISO chronology). Only years 0000 through 9999
+ * are supported. Values outside that range or text not exactly in the fixed
+ * format are rejected, so callers can fall back to a
+ * {@link org.joda.time.format.DateTimeFormatter}. Instances are immutable and
+ * thread-safe.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public final class IsoUtcTimestampCodec {
+
+	/** The pattern using a space between the date and time. */
+	public static final String SPACE_PATTERN = "yyyy-MM-dd HH:mm:ss.SSS'Z'";
+
+	/** The ISO 8601 pattern using a {@code T} between the date and time. */
+	public static final String ISO_8601_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'";
+
+	/** The length of every formatted timestamp. */
+	public static final int LENGTH = 24;
+
+	/** The value returned by {@link #parse(char[], int, int)} for invalid text. */
+	public static final long INVALID = Long.MIN_VALUE;
+
+	/** A codec for {@link #SPACE_PATTERN}. */
+	public static final IsoUtcTimestampCodec SPACE = new IsoUtcTimestampCodec(' ');
+
+	/** A codec for {@link #ISO_8601_PATTERN}. */
+	public static final IsoUtcTimestampCodec ISO_8601 = new IsoUtcTimestampCodec('T');
+
+	/** The epoch milliseconds of 0000-01-01 00:00:00.000Z. */
+	private static final long MIN_MILLIS = -62167219200000L;
+
+	/** The epoch milliseconds of 9999-12-31 23:59:59.999Z. */
+	private static final long MAX_MILLIS = 253402300799999L;
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	private final char separator;
+
+	private IsoUtcTimestampCodec(char separator) {
+		super();
+		this.separator = separator;
+	}
+
+	/**
+	 * Get a codec for a date pattern and time zone, if one applies.
+	 *
+	 * @param pattern
+	 *        the Joda date format pattern
+	 * @param timeZone
+	 *        the time zone; must be equivalent to UTC
+	 * @return the codec, or {@literal null} if the pattern and time zone are
+	 *         not supported
+	 */
+	public static IsoUtcTimestampCodec forPattern(String pattern, TimeZone timeZone) {
+		if ( timeZone == null || !DateTimeZone.UTC.equals(DateTimeZone.forTimeZone(timeZone)) ) {
+			return null;
+		}
+		if ( SPACE_PATTERN.equals(pattern) ) {
+			return SPACE;
+		} else if ( ISO_8601_PATTERN.equals(pattern) ) {
+			return ISO_8601;
+		}
+		return null;
+	}
+
+	/**
+	 * Test if a timestamp is within the range this codec can format.
+	 *
+	 * @param millis
+	 *        the epoch milliseconds
+	 * @return {@literal true} if {@code millis} can be formatted
+	 */
+	public boolean canFormat(long millis) {
+		return (millis >= MIN_MILLIS && millis <= MAX_MILLIS);
+	}
+
+	/**
+	 * Format a timestamp.
+	 *
+	 * @param millis
+	 *        the epoch milliseconds; must be supported by
+	 *        {@link #canFormat(long)}
+	 * @param buf
+	 *        the buffer to write to, with at least {@link #LENGTH} characters
+	 *        available from {@code offset}
+	 * @param offset
+	 *        the offset within {@code buf} to start writing at
+	 * @return the number of characters written, which is always
+	 *         {@link #LENGTH}
+	 */
+	public int format(long millis, char[] buf, int offset) {
+		long days = millis / MILLIS_PER_DAY;
+		int msOfDay = (int) (millis - days * MILLIS_PER_DAY);
+		if ( msOfDay < 0 ) {
+			days--;
+			msOfDay += MILLIS_PER_DAY;
+		}
+
+		// civil-from-days, with days shifted to an era starting 0000-03-01
+		final long z = days + 719468;
+		final long era = (z >= 0 ? z : z - 146096) / 146097;
+		final int doe = (int) (z - era * 146097);
+		final int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		final int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		final int mp = (5 * doy + 2) / 153;
+		final int day = doy - (153 * mp + 2) / 5 + 1;
+		final int month = (mp < 10 ? mp + 3 : mp - 9);
+		final int year = (int) (yoe + era * 400) + (month <= 2 ? 1 : 0);
+
+		int p = offset;
+		p = digits(year, 4, buf, p);
+		buf[p++] = '-';
+		p = digits(month, 2, buf, p);
+		buf[p++] = '-';
+		p = digits(day, 2, buf, p);
+		buf[p++] = separator;
+		p = digits(msOfDay / 3600000, 2, buf, p);
+		buf[p++] = ':';
+		p = digits((msOfDay / 60000) % 60, 2, buf, p);
+		buf[p++] = ':';
+		p = digits((msOfDay / 1000) % 60, 2, buf, p);
+		buf[p++] = '.';
+		p = digits(msOfDay % 1000, 3, buf, p);
+		buf[p++] = 'Z';
+		return p - offset;
+	}
+
+	private static int digits(int value, int width, char[] buf, int offset) {
+		for ( int i = offset + width - 1; i >= offset; i-- ) {
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return offset + width;
+	}
+
+	/**
+	 * Parse a timestamp.
+	 *
+	 * @param buf
+	 *        the buffer to parse
+	 * @param offset
+	 *        the offset within {@code buf} to start parsing at
+	 * @param len
+	 *        the number of characters to parse
+	 * @return the epoch milliseconds, or {@link #INVALID} if the text is not a
+	 *         valid timestamp in this codec's format
+	 */
+	public long parse(char[] buf, int offset, int len) {
+		if ( buf == null || len != LENGTH || buf[offset + 4] != '-' || buf[offset + 7] != '-'
+				|| buf[offset + 10] != separator || buf[offset + 13] != ':'
+				|| buf[offset + 16] != ':' || buf[offset + 19] != '.' || buf[offset + 23] != 'Z' ) {
+			return INVALID;
+		}
+		final int year = number(buf, offset, 4);
+		final int month = number(buf, offset + 5, 2);
+		final int day = number(buf, offset + 8, 2);
+		final int hour = number(buf, offset + 11, 2);
+		final int minute = number(buf, offset + 14, 2);
+		final int second = number(buf, offset + 17, 2);
+		final int ms = number(buf, offset + 20, 3);
+		if ( year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+				|| hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+				|| ms < 0 ) {
+			return INVALID;
+		}
+
+		// days-from-civil, with years starting on March 1
+		final int y = (month <= 2 ? year - 1 : year);
+		final int era = (y >= 0 ? y : y - 399) / 400;
+		final int yoe = y - era * 400;
+		final int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		final long days = era * 146097L + doe - 719468;
+		return days * MILLIS_PER_DAY + hour * 3600000L + minute * 60000L + second * 1000L + ms;
+	}
+
+	private static int number(char[] buf, int offset, int width) {
+		int result = 0;
+		for ( int i = offset, end = offset + width; i < end; i++ ) {
+			int d = buf[i] - '0';
+			if ( d < 0 || d > 9 ) {
+				return -1;
+			}
+			result = result * 10 + d;
+		}
+		return result;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28);
+
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+
+			default:
+				return 31;
+		}
+	}
+
+}
@@ -6,18 +6,29 @@
 
 package org.eniware.util;
 
+import java.io.IOException;
 import java.util.TimeZone;
+import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
 
 /**
  * Abstract {@link JsonDeserializer} class for converting strings into Joda
  * objects.
+ * 
+ * <p>
+ * Formatters are shared via {@link JodaFormatterCache}. When the pattern is
+ * {@link IsoUtcTimestampCodec#SPACE_PATTERN} or
+ * {@link IsoUtcTimestampCodec#ISO_8601_PATTERN} and the time zone is UTC,
+ * {@link #parseDateTime(JsonParser)} parses with {@link IsoUtcTimestampCodec}
+ * directly from the parser's character buffer.
+ * </p>
  *
- * @version 1.0
+ * @version 1.1
  */
 public abstract class JodaBaseJsonDeserializer<T> extends StdScalarDeserializer<T> {
 
@@ -26,6 +37,8 @@ public abstract class JodaBaseJsonDeserializer<T> extends StdScalarDeserializer<
 	/** The {@link DateTimeFormatter} for parsing dates. */
 	protected final DateTimeFormatter formatter;
 
+	private final IsoUtcTimestampCodec isoCodec;
+
 	/**
 	 * Construct from a String date pattern.
 	 * 
@@ -50,11 +63,38 @@ public abstract class JodaBaseJsonDeserializer<T> extends StdScalarDeserializer<
 	 */
 	public JodaBaseJsonDeserializer(Class<T> clazz, String pattern, TimeZone timeZone) {
 		super(clazz);
-		if ( timeZone != null ) {
-			formatter = DateTimeFormat.forPattern(pattern).withZone(DateTimeZone.forTimeZone(timeZone));
-		} else {
-			formatter = DateTimeFormat.forPattern(pattern);
+		formatter = JodaFormatterCache.forPattern(pattern, timeZone);
+		isoCodec = IsoUtcTimestampCodec.forPattern(pattern, timeZone);
+	}
+
+	/**
+	 * Parse the current parser text into a {@link DateTime} using the
+	 * configured formatter.
+	 * 
+	 * <p>
+	 * Text in the fixed-width format of a configured
+	 * {@link IsoUtcTimestampCodec} is parsed without creating a
+	 * {@code String}; all other text is parsed by {@link #formatter}.
+	 * </p>
+	 * 
+	 * @param parser
+	 *        the parser, positioned on the value to parse
+	 * @return the parsed date
+	 * @throws IOException
+	 *         if an IO error occurs
+	 * @throws IllegalArgumentException
+	 *         if the text cannot be parsed
+	 * @since 1.1
+	 */
+	protected final DateTime parseDateTime(JsonParser parser) throws IOException {
+		if ( isoCodec != null && parser.getCurrentToken() == JsonToken.VALUE_STRING ) {
+			long millis = isoCodec.parse(parser.getTextCharacters(), parser.getTextOffset(),
+					parser.getTextLength());
+			if ( millis != IsoUtcTimestampCodec.INVALID ) {
+				return new DateTime(millis, DateTimeZone.UTC);
+			}
 		}
+		return formatter.parseDateTime(parser.getText());
 	}
 
 }
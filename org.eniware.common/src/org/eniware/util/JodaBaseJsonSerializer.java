@@ -6,28 +6,54 @@
 
 package org.eniware.util;
 
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
-import org.joda.time.DateTimeZone;
 import org.joda.time.ReadableInstant;
 import org.joda.time.ReadablePartial;
-import org.joda.time.format.DateTimeFormat;
+import org.joda.time.chrono.ISOChronology;
 import org.joda.time.format.DateTimeFormatter;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
 
 /**
  * Abstract {@link JsonSerializer} class for converting Joda objects into simple
  * strings.
+ * 
+ * <p>
+ * Formatters are shared via {@link JodaFormatterCache}. When the pattern is
+ * {@link IsoUtcTimestampCodec#SPACE_PATTERN} or
+ * {@link IsoUtcTimestampCodec#ISO_8601_PATTERN} and the time zone is UTC, ISO
+ * chronology instants are formatted with {@link IsoUtcTimestampCodec} instead
+ * of the formatter.
+ * </p>
  *
- * @version 1.1
+ * @version 1.2
  */
 public abstract class JodaBaseJsonSerializer<T> extends StdScalarSerializer<T> {
 
 	private static final long serialVersionUID = -7898014390210021054L;
 
+	private static final ThreadLocal<FormatBuffer> BUFFER = new ThreadLocal<FormatBuffer>() {
+
+		@Override
+		protected FormatBuffer initialValue() {
+			return new FormatBuffer();
+		}
+
+	};
+
+	private static final class FormatBuffer {
+
+		private final StringBuilder builder = new StringBuilder(32);
+		private char[] chars = new char[32];
+
+	}
+
 	private final DateTimeFormatter formatter;
+	private final IsoUtcTimestampCodec isoCodec;
 
 	/**
 	 * Construct from a String date pattern.
@@ -53,11 +79,8 @@ public abstract class JodaBaseJsonSerializer<T> extends StdScalarSerializer<T> {
 	 */
 	public JodaBaseJsonSerializer(Class<T> clazz, String pattern, TimeZone timeZone) {
 		super(clazz);
-		if ( timeZone != null ) {
-			formatter = DateTimeFormat.forPattern(pattern).withZone(DateTimeZone.forTimeZone(timeZone));
-		} else {
-			formatter = DateTimeFormat.forPattern(pattern);
-		}
+		formatter = JodaFormatterCache.forPattern(pattern, timeZone);
+		isoCodec = IsoUtcTimestampCodec.forPattern(pattern, timeZone);
 	}
 
 	/**
@@ -86,4 +109,69 @@ public abstract class JodaBaseJsonSerializer<T> extends StdScalarSerializer<T> {
 				"Unsupported date object [" + propertyValue.getClass() + "]: " + propertyValue);
 	}
 
+	/**
+	 * Serialize a JodaTime object as a JSON string using the configured
+	 * formatter.
+	 * 
+	 * <p>
+	 * This produces the same value as {@link #serializeWithFormatter(Object)},
+	 * but formats into a reusable per-thread character buffer that is written
+	 * directly to the generator, without creating a {@code String}.
+	 * </p>
+	 * 
+	 * @param propertyValue
+	 *        the JodaTime object
+	 * @param generator
+	 *        the generator to write to
+	 * @throws IOException
+	 *         if an IO error occurs
+	 * @throws IllegalArgumentException
+	 *         if {@code propertyValue} is not a supported JodaTime object
+	 * @since 1.2
+	 */
+	protected final void writeWithFormatter(Object propertyValue, JsonGenerator generator)
+			throws IOException {
+		if ( propertyValue == null ) {
+			generator.writeNull();
+			return;
+		}
+		final FormatBuffer buf = BUFFER.get();
+		if ( isoCodec != null ) {
+			long millis = Long.MIN_VALUE;
+			if ( propertyValue instanceof ReadableInstant ) {
+				ReadableInstant instant = (ReadableInstant) propertyValue;
+				if ( instant.getChronology() instanceof ISOChronology ) {
+					millis = instant.getMillis();
+				}
+			} else if ( propertyValue instanceof Date ) {
+				millis = ((Date) propertyValue).getTime();
+			}
+			if ( isoCodec.canFormat(millis) ) {
+				int len = isoCodec.format(millis, buf.chars, 0);
+				generator.writeString(buf.chars, 0, len);
+				return;
+			}
+		}
+		final StringBuilder sb = buf.builder;
+		sb.setLength(0);
+		if ( propertyValue instanceof ReadableInstant ) {
+			formatter.printTo(sb, (ReadableInstant) propertyValue);
+		} else if ( propertyValue instanceof ReadablePartial ) {
+			formatter.printTo(sb, (ReadablePartial) propertyValue);
+		} else if ( propertyValue instanceof Date ) {
+			formatter.printTo(sb, ((Date) propertyValue).getTime());
+		} else if ( propertyValue instanceof Calendar ) {
+			formatter.printTo(sb, ((Calendar) propertyValue).getTimeInMillis());
+		} else {
+			throw new IllegalArgumentException(
+					"Unsupported date object [" + propertyValue.getClass() + "]: " + propertyValue);
+		}
+		final int len = sb.length();
+		if ( buf.chars.length < len ) {
+			buf.chars = new char[len];
+		}
+		sb.getChars(0, len, buf.chars, 0);
+		generator.writeString(buf.chars, 0, len);
+	}
+
 }
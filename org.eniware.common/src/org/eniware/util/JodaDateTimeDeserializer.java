@@ -16,7 +16,7 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 /**
  * JsonDeserializer for {@link DateTime} objects from formatted strings.
  * 
- * @version 1.0
+ * @version 1.1
  */
 public class JodaDateTimeDeserializer extends JodaBaseJsonDeserializer<DateTime> {
 
@@ -58,7 +58,7 @@ public class JodaDateTimeDeserializer extends JodaBaseJsonDeserializer<DateTime>
 	@Override
 	public DateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException,
 			JsonProcessingException {
-		return formatter.parseDateTime(parser.getText());
+		return parseDateTime(parser);
 	}
 
 }
@@ -16,7 +16,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 /**
  * JsonSerializer for {@link DateTime} into simple strings.
  *
- * @version 1.1
+ * @version 1.2
  */
 public class JodaDateTimeSerializer extends JodaBaseJsonSerializer<DateTime> {
 
@@ -61,7 +61,7 @@ public class JodaDateTimeSerializer extends JodaBaseJsonSerializer<DateTime> {
 		if ( o == null ) {
 			return;
 		}
-		generator.writeString(serializeWithFormatter(o));
+		writeWithFormatter(o, generator);
 	}
 
 }
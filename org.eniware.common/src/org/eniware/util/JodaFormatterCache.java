@@ -0,0 +1,71 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.util;
+
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Shared cache of Joda {@link DateTimeFormatter} instances by pattern and time
+ * zone.
+ *
+ * <p>
+ * Joda formatters are immutable and thread-safe, so a single instance can be
+ * shared by every serializer, deserializer, and editor configured with the
+ * same pattern and time zone.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public final class JodaFormatterCache {
+
+	/** The maximum number of formatters cached. */
+	private static final int MAX_SIZE = 128;
+
+	private static final ConcurrentMap<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<String, DateTimeFormatter>(
+			16);
+
+	private JodaFormatterCache() {
+		// don't construct me
+	}
+
+	/**
+	 * Get a formatter for a pattern and optional time zone.
+	 *
+	 * @param pattern
+	 *        the Joda date format pattern
+	 * @param timeZone
+	 *        the time zone to format in, or {@literal null} for the default
+	 *        time zone
+	 * @return the formatter, never {@literal null}
+	 * @throws IllegalArgumentException
+	 *         if the pattern is invalid
+	 */
+	public static DateTimeFormatter forPattern(String pattern, TimeZone timeZone) {
+		final String key = (timeZone == null ? "|" + pattern : timeZone.getID() + '|' + pattern);
+		DateTimeFormatter formatter = FORMATTERS.get(key);
+		if ( formatter == null ) {
+			formatter = DateTimeFormat.forPattern(pattern);
+			if ( timeZone != null ) {
+				formatter = formatter.withZone(DateTimeZone.forTimeZone(timeZone));
+			}
+			if ( FORMATTERS.size() < MAX_SIZE ) {
+				DateTimeFormatter existing = FORMATTERS.putIfAbsent(key, formatter);
+				if ( existing != null ) {
+					formatter = existing;
+				}
+			}
+		}
+		return formatter;
+	}
+
+}
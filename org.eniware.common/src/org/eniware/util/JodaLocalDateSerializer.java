@@ -16,7 +16,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 /**
  * JsonSerializer for {@link LocalDate} into simple strings.
  * 
- * @version 1.1
+ * @version 1.2
  */
 public class JodaLocalDateSerializer extends JodaBaseJsonSerializer<LocalDate> {
 
@@ -61,7 +61,7 @@ public class JodaLocalDateSerializer extends JodaBaseJsonSerializer<LocalDate> {
 		if ( o == null ) {
 			return;
 		}
-		generator.writeString(serializeWithFormatter(o));
+		writeWithFormatter(o, generator);
 	}
 
 }
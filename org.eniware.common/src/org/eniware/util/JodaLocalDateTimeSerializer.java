@@ -16,7 +16,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 /**
  * JsonSerializer for {@link LocalDateTime} into simple strings.
  *
- * @version 1.1
+ * @version 1.2
  */
 public class JodaLocalDateTimeSerializer extends JodaBaseJsonSerializer<LocalDateTime> {
 
@@ -61,7 +61,7 @@ public class JodaLocalDateTimeSerializer extends JodaBaseJsonSerializer<LocalDat
 		if ( o == null ) {
 			return;
 		}
-		generator.writeString(serializeWithFormatter(o));
+		writeWithFormatter(o, generator);
 	}
 
 }
@@ -16,7 +16,7 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 /**
  * JsonSerializer for {@link LocalTime} into simple strings.
  *
- * @version 1.1
+ * @version 1.2
  */
 public class JodaLocalTimeSerializer extends JodaBaseJsonSerializer<LocalTime> {
 
@@ -61,7 +61,7 @@ public class JodaLocalTimeSerializer extends JodaBaseJsonSerializer<LocalTime> {
 		if ( o == null ) {
 			return;
 		}
-		generator.writeString(serializeWithFormatter(o));
+		writeWithFormatter(o, generator);
 	}
 
 }
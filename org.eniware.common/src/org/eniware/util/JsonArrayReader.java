@@ -0,0 +1,297 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Streaming reader for a JSON array of objects.
+ *
+ * <p>
+ * Elements are parsed from the input stream one at a time as they are
+ * requested, so memory use is bounded by the size of a single element (or
+ * batch of elements) no matter how large the array is. Elements can be read
+ * via the {@link Iterator} API, or passed to a handler via
+ * {@link #forEach(ElementHandler)} or
+ * {@link #forEachBatch(int, BatchHandler)}. Handlers are called on the reading
+ * thread, so no more input is read until a handler returns.
+ * </p>
+ *
+ * <p>
+ * The input may also be a single JSON object instead of an array, which is
+ * treated as an array with one element. Closing the reader closes the input
+ * stream. This class is <b>not</b> thread-safe.
+ * </p>
+ *
+ * @param <T>
+ *        the element type
+ * @version 1.0
+ * @since 1.42
+ */
+public class JsonArrayReader<T> implements Iterator<T>, Closeable {
+
+	/**
+	 * API for handling single array elements.
+	 *
+	 * @param <T>
+	 *        the element type
+	 */
+	public interface ElementHandler<T> {
+
+		/**
+		 * Handle an array element.
+		 *
+		 * @param element
+		 *        the element
+		 * @throws IOException
+		 *         if an IO error occurs
+		 */
+		void handleElement(T element) throws IOException;
+
+	}
+
+	/**
+	 * API for handling batches of array elements.
+	 *
+	 * @param <T>
+	 *        the element type
+	 */
+	public interface BatchHandler<T> {
+
+		/**
+		 * Handle a batch of array elements.
+		 *
+		 * <p>
+		 * The list is reused for the next batch once this method returns, so
+		 * it must be copied if it is needed afterwards.
+		 * </p>
+		 *
+		 * @param batch
+		 *        the batch of elements
+		 * @throws IOException
+		 *         if an IO error occurs
+		 */
+		void handleBatch(List<T> batch) throws IOException;
+
+	}
+
+	private final JsonParser parser;
+	private final ObjectReader reader;
+	private boolean singleObject;
+	private boolean started;
+	private boolean finished;
+	private boolean pending;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param mapper
+	 *        the mapper to parse elements with
+	 * @param in
+	 *        the input stream to read
+	 * @param type
+	 *        the element type
+	 * @throws IOException
+	 *         if the parser cannot be created
+	 */
+	public JsonArrayReader(ObjectMapper mapper, InputStream in, Class<T> type) throws IOException {
+		this(mapper.getFactory().createParser(in), mapper.readerFor(type));
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *        the parser to read from, positioned before or on the array start
+	 * @param reader
+	 *        the reader to parse elements with
+	 */
+	public JsonArrayReader(JsonParser parser, ObjectReader reader) {
+		super();
+		this.parser = parser;
+		this.reader = reader;
+	}
+
+	private void start() throws IOException {
+		started = true;
+		JsonToken t = parser.getCurrentToken();
+		if ( t == null ) {
+			t = parser.nextToken();
+		}
+		if ( t == null ) {
+			finished = true;
+		} else if ( t == JsonToken.START_OBJECT ) {
+			singleObject = true;
+			pending = true;
+		} else if ( t != JsonToken.START_ARRAY ) {
+			throw JsonMappingException.from(parser, "Expected JSON array, got " + t);
+		}
+	}
+
+	/**
+	 * Advance the parser to the next element.
+	 *
+	 * @return {@literal true} if an element is available
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	private boolean advance() throws IOException {
+		if ( pending ) {
+			return true;
+		}
+		if ( !started ) {
+			start();
+			if ( pending ) {
+				return true;
+			}
+		}
+		if ( finished ) {
+			return false;
+		}
+		if ( singleObject ) {
+			finished = true;
+			return false;
+		}
+		JsonToken t = parser.nextToken();
+		if ( t == null || t == JsonToken.END_ARRAY ) {
+			finished = true;
+			return false;
+		}
+		pending = true;
+		return true;
+	}
+
+	/**
+	 * Read the next element.
+	 *
+	 * @return the next element, or {@literal null} if no more elements are
+	 *         available
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	public T read() throws IOException {
+		if ( !advance() ) {
+			return null;
+		}
+		pending = false;
+		if ( parser.getCurrentToken() == JsonToken.VALUE_NULL ) {
+			return null;
+		}
+		return reader.readValue(parser);
+	}
+
+	/**
+	 * Pass each remaining element to a handler.
+	 *
+	 * @param handler
+	 *        the handler
+	 * @return the number of elements handled
+	 * @throws IOException
+	 *         if an IO error occurs
+	 */
+	public long forEach(ElementHandler<T> handler) throws IOException {
+		long count = 0;
+		while ( advance() ) {
+			handler.handleElement(read());
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Pass the remaining elements to a handler in batches.
+	 *
+	 * @param batchSize
+	 *        the maximum number of elements per batch; every batch except
+	 *        possibly the last will have this many elements
+	 * @param handler
+	 *        the handler
+	 * @return the number of elements handled
+	 * @throws IOException
+	 *         if an IO error occurs
+	 * @throws IllegalArgumentException
+	 *         if {@code batchSize} is less than 1
+	 */
+	public long forEachBatch(int batchSize, BatchHandler<T> handler) throws IOException {
+		if ( batchSize < 1 ) {
+			throw new IllegalArgumentException("The batchSize must be greater than 0.");
+		}
+		final List<T> batch = new ArrayList<T>(batchSize);
+		long count = 0;
+		while ( advance() ) {
+			batch.add(read());
+			count++;
+			if ( batch.size() >= batchSize ) {
+				handler.handleBatch(batch);
+				batch.clear();
+			}
+		}
+		if ( !batch.isEmpty() ) {
+			handler.handleBatch(batch);
+			batch.clear();
+		}
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws RuntimeException
+	 *         if an IO error occurs
+	 */
+	@Override
+	public boolean hasNext() {
+		try {
+			return advance();
+		} catch ( IOException e ) {
+			throw new RuntimeException("Error reading JSON array", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws RuntimeException
+	 *         if an IO error occurs
+	 */
+	@Override
+	public T next() {
+		try {
+			if ( !advance() ) {
+				throw new NoSuchElementException();
+			}
+			return read();
+		} catch ( IOException e ) {
+			throw new RuntimeException("Error reading JSON array element", e);
+		}
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() throws IOException {
+		finished = true;
+		pending = false;
+		parser.close();
+	}
+
+}
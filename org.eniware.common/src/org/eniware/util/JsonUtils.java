@@ -6,30 +6,42 @@
 
 package org.eniware.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eniware.domain.GeneralDatumMetadata;
+import org.eniware.domain.GeneralDatumSamples;
+import org.eniware.domain.GeneralDatumSamplesCompactJson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Utilities for JSON data.
  *
- * @version 1.0
+ * @version 1.1
  * @since 1.36
  */
 public final class JsonUtils {
@@ -43,6 +55,45 @@ public final class JsonUtils {
 			.setSerializationInclusion(Include.NON_NULL)
 			.configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true);
 
+	/** The maximum number of per-class writers to cache. */
+	private static final int MAX_CACHED_WRITERS = 256;
+
+	/** The maximum size of a per-thread buffer to keep for reuse. */
+	private static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+
+	private static final ObjectWriter OBJECT_WRITER = OBJECT_MAPPER.writer()
+			.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+	/**
+	 * Cached writers, only for classes that cannot outlive this class, so
+	 * classes from other bundles are never pinned in memory.
+	 */
+	private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<Class<?>, ObjectWriter>(
+			32);
+
+	private static final ThreadLocal<ReusableByteArrayOutputStream> BUFFERS = new ThreadLocal<ReusableByteArrayOutputStream>();
+
+	/**
+	 * A byte array output stream that exposes its buffer, to avoid copying.
+	 */
+	private static final class ReusableByteArrayOutputStream extends ByteArrayOutputStream {
+
+		private boolean inUse;
+
+		private ReusableByteArrayOutputStream() {
+			super(1024);
+		}
+
+		private ByteBuffer byteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+		}
+
+		private int capacity() {
+			return buf.length;
+		}
+
+	}
+
 	private static final class StringMapTypeReference
 			extends TypeReference<LinkedHashMap<String, Object>> {
 
@@ -74,7 +125,7 @@ public final class JsonUtils {
 		String result = defaultValue;
 		if ( o != null ) {
 			try {
-				return OBJECT_MAPPER.writeValueAsString(o);
+				return writerFor(o.getClass()).writeValueAsString(o);
 			} catch ( Exception e ) {
 				LOG.error("Exception marshalling {} to JSON", o, e);
 			}
@@ -82,6 +133,195 @@ public final class JsonUtils {
 		return result;
 	}
 
+	/**
+	 * Get a writer for a specific class, using the internal
+	 * {@link ObjectMapper}.
+	 * 
+	 * <p>
+	 * Writers for classes loaded by the class loader of this class (or one of
+	 * its parents) are cached per class with their root serializer already
+	 * resolved, so repeated serialization of the same class does not need to
+	 * look up the serializer again. Writers for classes from any other class
+	 * loader, such as those of other bundles, are created on each call and not
+	 * cached, so that this cache never prevents those class loaders from being
+	 * unloaded.
+	 * </p>
+	 * 
+	 * @param clazz
+	 *        the class of the objects to write; must be the actual runtime class
+	 *        of those objects, not a superclass
+	 * @return the writer
+	 * @since 1.1
+	 */
+	public static ObjectWriter writerFor(final Class<?> clazz) {
+		ObjectWriter writer = WRITERS.get(clazz);
+		if ( writer == null ) {
+			if ( !isCacheable(clazz) ) {
+				return OBJECT_WRITER.forType(clazz);
+			}
+			if ( WRITERS.size() >= MAX_CACHED_WRITERS ) {
+				return OBJECT_WRITER;
+			}
+			writer = OBJECT_WRITER.forType(clazz);
+			ObjectWriter existing = WRITERS.putIfAbsent(clazz, writer);
+			if ( existing != null ) {
+				writer = existing;
+			}
+		}
+		return writer;
+	}
+
+	private static boolean isCacheable(final Class<?> clazz) {
+		final ClassLoader loader = clazz.getClassLoader();
+		for ( ClassLoader l = JsonUtils.class.getClassLoader();; l = l.getParent() ) {
+			if ( loader == l ) {
+				return true;
+			}
+			if ( l == null ) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Write an object as JSON to an output stream, encoded as UTF-8.
+	 * 
+	 * <p>
+	 * The same internal {@link ObjectMapper} as
+	 * {@link #getJSONString(Object, String)} is used, but exceptions are
+	 * <b>not</b> caught. The output stream is not closed.
+	 * </p>
+	 * 
+	 * @param o
+	 *        the object to serialize to JSON
+	 * @param out
+	 *        the stream to write to
+	 * @throws IOException
+	 *         if any IO or serialization error occurs
+	 * @since 1.1
+	 */
+	public static void writeJSON(final Object o, final OutputStream out) throws IOException {
+		if ( o == null ) {
+			OBJECT_WRITER.writeValue(out, null);
+			return;
+		}
+		writerFor(o.getClass()).writeValue(out, o);
+	}
+
+	/**
+	 * Serialize an object into a per-thread, reusable buffer.
+	 * 
+	 * @param o
+	 *        the object to serialize
+	 * @return the buffer holding the JSON, marked in use
+	 * @throws IOException
+	 *         if any serialization error occurs
+	 */
+	private static ReusableByteArrayOutputStream serialize(final Object o) throws IOException {
+		ReusableByteArrayOutputStream buf = BUFFERS.get();
+		if ( buf != null && !buf.inUse && buf.capacity() > MAX_REUSED_BUFFER_SIZE ) {
+			// grown by a previous large value, possibly still referenced by the
+			// buffer returned from getJSONByteBuffer() until now, so drop it
+			buf = null;
+			BUFFERS.remove();
+		}
+		if ( buf == null || buf.inUse ) {
+			// first use on this thread, or nested call during serialization
+			buf = new ReusableByteArrayOutputStream();
+			if ( BUFFERS.get() == null ) {
+				BUFFERS.set(buf);
+			}
+		}
+		buf.reset();
+		buf.inUse = true;
+		try {
+			writerFor(o.getClass()).writeValue(buf, o);
+		} catch ( IOException e ) {
+			release(buf);
+			throw e;
+		} catch ( RuntimeException e ) {
+			release(buf);
+			throw e;
+		}
+		return buf;
+	}
+
+	private static void release(ReusableByteArrayOutputStream buf) {
+		buf.inUse = false;
+		if ( buf.capacity() > MAX_REUSED_BUFFER_SIZE && BUFFERS.get() == buf ) {
+			// don't hold on to large buffers
+			BUFFERS.remove();
+		}
+	}
+
+	/**
+	 * Convert an object to JSON encoded as UTF-8 bytes.
+	 * 
+	 * <p>
+	 * This works like {@link #getJSONString(Object, String)}, but serializes
+	 * into a per-thread buffer that is reused across calls, and avoids
+	 * creating an intermediate {@link String}.
+	 * </p>
+	 * 
+	 * @param o
+	 *        the object to serialize to JSON
+	 * @param defaultValue
+	 *        a default value to use if {@code o} is <em>null</em> or if any
+	 *        error occurs serializing the object to JSON
+	 * @return the JSON bytes
+	 * @since 1.1
+	 */
+	public static byte[] getJSONBytes(final Object o, final byte[] defaultValue) {
+		if ( o != null ) {
+			try {
+				ReusableByteArrayOutputStream buf = serialize(o);
+				try {
+					return buf.toByteArray();
+				} finally {
+					release(buf);
+				}
+			} catch ( Exception e ) {
+				LOG.error("Exception marshalling {} to JSON", o, e);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Convert an object to JSON encoded as UTF-8, without copying the encoded
+	 * bytes.
+	 * 
+	 * <p>
+	 * The returned buffer is a read-only view of a per-thread buffer. It is
+	 * only valid until the next call to any {@code JsonUtils} method that
+	 * serializes to bytes on the same thread, and must not be passed to other
+	 * threads.
+	 * </p>
+	 * 
+	 * @param o
+	 *        the object to serialize to JSON
+	 * @return the JSON bytes, or {@literal null} if {@code o} is {@literal null}
+	 *         or any error occurs serializing the object to JSON
+	 * @since 1.1
+	 */
+	public static ByteBuffer getJSONByteBuffer(final Object o) {
+		if ( o != null ) {
+			try {
+				ReusableByteArrayOutputStream buf = serialize(o);
+				try {
+					return buf.byteBuffer();
+				} finally {
+					// not released, as the returned buffer shares its array; a
+					// large array is dropped by the next call instead
+					buf.inUse = false;
+				}
+			} catch ( Exception e ) {
+				LOG.error("Exception marshalling {} to JSON", o, e);
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Convert a JSON string to an object. This is designed for simple values.
 	 * An internal {@link ObjectMapper} will be used, and all floating point
@@ -108,6 +348,32 @@ public final class JsonUtils {
 		return result;
 	}
 
+	/**
+	 * Create a streaming reader for a JSON array of objects.
+	 * 
+	 * <p>
+	 * Unlike {@link #getObjectFromJSON(String, Class)} the JSON is not held in
+	 * memory: elements are parsed from {@code in} one at a time as they are
+	 * read. The same internal {@link ObjectMapper} is used, so all floating
+	 * point values will be converted to {@link BigDecimal} values. Exceptions
+	 * are <b>not</b> caught. The returned reader must be closed, which also
+	 * closes {@code in}.
+	 * </p>
+	 * 
+	 * @param in
+	 *        the input stream of the JSON array
+	 * @param clazz
+	 *        the type of Object to map each array element into
+	 * @return the reader
+	 * @throws IOException
+	 *         if the reader cannot be created
+	 * @since 1.1
+	 */
+	public static <T> JsonArrayReader<T> getObjectArrayReader(final InputStream in,
+			Class<T> clazz) throws IOException {
+		return new JsonArrayReader<T>(OBJECT_MAPPER, in, clazz);
+	}
+
 	/**
 	 * Convert a JSON string to a Map with string keys.
 	 * 
@@ -197,6 +463,128 @@ public final class JsonUtils {
 		}
 	}
 
+	/**
+	 * Write samples to a JSON generator in the compact, schema-driven form
+	 * described in {@link GeneralDatumSamplesCompactJson}.
+	 * 
+	 * @param generator
+	 *        the generator to write to
+	 * @param data
+	 *        an {@link Iterable} of {@link GeneralDatumSamples}, or a
+	 *        {@link Map} of source IDs to such iterables
+	 * @throws IOException
+	 *         if any IO error occurs
+	 * @throws IllegalArgumentException
+	 *         if {@code data} cannot be written in compact form
+	 * @since 1.1
+	 */
+	@SuppressWarnings("unchecked")
+	public static void writeCompactSamples(JsonGenerator generator, Object data)
+			throws IOException {
+		if ( !GeneralDatumSamplesCompactJson.isCompactable(data) ) {
+			throw new IllegalArgumentException("Not a collection of samples: " + data);
+		}
+		if ( data instanceof Map ) {
+			GeneralDatumSamplesCompactJson.writeGroups(generator,
+					(Map<?, ? extends Iterable<? extends GeneralDatumSamples>>) data);
+		} else {
+			GeneralDatumSamplesCompactJson.write(generator,
+					(Iterable<? extends GeneralDatumSamples>) data);
+		}
+	}
+
+	/**
+	 * Convert samples to a JSON string in the compact, schema-driven form
+	 * described in {@link GeneralDatumSamplesCompactJson}. All exceptions
+	 * while serializing the samples are caught and ignored.
+	 * 
+	 * @param data
+	 *        an {@link Iterable} of {@link GeneralDatumSamples}, or a
+	 *        {@link Map} of source IDs to such iterables
+	 * @param defaultValue
+	 *        a default value to use if {@code data} is <em>null</em> or if any
+	 *        error occurs serializing the samples to JSON
+	 * @return the JSON string
+	 * @since 1.1
+	 */
+	public static String getCompactSamplesJSONString(final Object data, final String defaultValue) {
+		String result = defaultValue;
+		if ( data != null ) {
+			try {
+				StringWriter out = new StringWriter();
+				JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(out);
+				try {
+					writeCompactSamples(generator, data);
+				} finally {
+					generator.close();
+				}
+				return out.toString();
+			} catch ( Exception e ) {
+				LOG.error("Exception marshalling {} to compact JSON", data, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Convert a compact JSON string of a single group of samples into a list
+	 * of samples. All exceptions while deserializing the samples are caught
+	 * and ignored.
+	 * 
+	 * @param json
+	 *        the JSON string to convert
+	 * @return the samples, or <em>null</em> if {@code json} is <em>null</em>
+	 *         or cannot be parsed
+	 * @see GeneralDatumSamplesCompactJson
+	 * @since 1.1
+	 */
+	public static List<GeneralDatumSamples> getCompactSamplesFromJSON(final String json) {
+		List<GeneralDatumSamples> result = null;
+		if ( json != null ) {
+			try {
+				JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json);
+				try {
+					result = GeneralDatumSamplesCompactJson.read(parser);
+				} finally {
+					parser.close();
+				}
+			} catch ( Exception e ) {
+				LOG.error("Exception deserialzing compact json {}", json, e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Convert a compact JSON string of samples grouped by source ID into a
+	 * map of sample lists. All exceptions while deserializing the samples are
+	 * caught and ignored.
+	 * 
+	 * @param json
+	 *        the JSON string to convert
+	 * @return the samples, keyed by source ID, or <em>null</em> if
+	 *         {@code json} is <em>null</em> or cannot be parsed
+	 * @see GeneralDatumSamplesCompactJson
+	 * @since 1.1
+	 */
+	public static Map<String, List<GeneralDatumSamples>> getCompactSampleGroupsFromJSON(
+			final String json) {
+		Map<String, List<GeneralDatumSamples>> result = null;
+		if ( json != null ) {
+			try {
+				JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json);
+				try {
+					result = GeneralDatumSamplesCompactJson.readGroups(parser);
+				} finally {
+					parser.close();
+				}
+			} catch ( Exception e ) {
+				LOG.error("Exception deserialzing compact json {}", json, e);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Parse a BigDecimal from a JSON object attribute value.
 	 * 
@@ -0,0 +1,193 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, thread-safe dictionary of canonical key strings.
+ *
+ * <p>
+ * Each distinct key added to the dictionary is assigned a stable integer ID,
+ * starting at {@literal 0}, and a single canonical {@link String} instance that
+ * all callers share. Canonical instances are obtained via
+ * {@link String#intern()}, so they are also identical to keys interned by
+ * Jackson's field name canonicalization. Once the dictionary holds
+ * {@code maxSize} keys no new keys are added, and {@link #canonicalKey(String)}
+ * simply returns the key it was given.
+ * </p>
+ *
+ * <p>
+ * Keys are never removed, so only keys from trusted or local sources should be
+ * added via {@link #idFor(String)} or {@link #canonicalKey(String)}. Keys from
+ * untrusted input, such as deserialized JSON, should be looked up via
+ * {@link #existingIdFor(String)} or {@link #existingCanonicalKey(String)}, so
+ * arbitrary input cannot fill the dictionary.
+ * </p>
+ *
+ * <p>
+ * Lookups of existing keys do not block.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class KeyDictionary {
+
+	/** The default maximum number of keys to store. */
+	public static final int DEFAULT_MAX_SIZE = 8192;
+
+	private final int maxSize;
+	private final ConcurrentMap<String, Integer> ids;
+	private final AtomicReferenceArray<String> keys;
+	private final AtomicInteger counter = new AtomicInteger(0);
+
+	/**
+	 * Construct with the default maximum size.
+	 */
+	public KeyDictionary() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Construct with a maximum size.
+	 *
+	 * @param maxSize
+	 *        the maximum number of keys to store
+	 */
+	public KeyDictionary(int maxSize) {
+		super();
+		if ( maxSize < 1 ) {
+			throw new IllegalArgumentException("The maxSize must be greater than 0.");
+		}
+		this.maxSize = maxSize;
+		this.ids = new ConcurrentHashMap<String, Integer>(Math.min(maxSize, 256));
+		this.keys = new AtomicReferenceArray<String>(maxSize);
+	}
+
+	/**
+	 * Get the ID of a key, adding the key to the dictionary if not already
+	 * present and space allows.
+	 *
+	 * @param key
+	 *        the key
+	 * @return the key ID, or {@literal -1} if {@code key} is {@literal null}
+	 *         or the dictionary is full
+	 */
+	public int idFor(String key) {
+		if ( key == null ) {
+			return -1;
+		}
+		Integer id = ids.get(key);
+		if ( id != null ) {
+			return id.intValue();
+		}
+		return add(key);
+	}
+
+	/**
+	 * Get the ID of a key, without adding the key to the dictionary.
+	 *
+	 * @param key
+	 *        the key
+	 * @return the key ID, or {@literal -1} if {@code key} is {@literal null}
+	 *         or not in the dictionary
+	 */
+	public int existingIdFor(String key) {
+		if ( key == null ) {
+			return -1;
+		}
+		Integer id = ids.get(key);
+		return (id != null ? id.intValue() : -1);
+	}
+
+	private int add(String key) {
+		if ( counter.get() >= maxSize ) {
+			return -1;
+		}
+		synchronized ( counter ) {
+			Integer id = ids.get(key);
+			if ( id != null ) {
+				return id.intValue();
+			}
+			int next = counter.get();
+			if ( next >= maxSize ) {
+				return -1;
+			}
+			String canonical = key.intern();
+			keys.set(next, canonical);
+			ids.put(canonical, Integer.valueOf(next));
+			counter.set(next + 1);
+			return next;
+		}
+	}
+
+	/**
+	 * Get the canonical instance of a key, adding the key to the dictionary if
+	 * not already present and space allows.
+	 *
+	 * @param key
+	 *        the key
+	 * @return the canonical key instance, or {@code key} itself if the
+	 *         dictionary is full
+	 */
+	public String canonicalKey(String key) {
+		int id = idFor(key);
+		return (id < 0 ? key : keys.get(id));
+	}
+
+	/**
+	 * Get the canonical instance of a key, without adding the key to the
+	 * dictionary.
+	 *
+	 * @param key
+	 *        the key
+	 * @return the canonical key instance, or {@code key} itself if not in the
+	 *         dictionary
+	 */
+	public String existingCanonicalKey(String key) {
+		int id = existingIdFor(key);
+		return (id < 0 ? key : keys.get(id));
+	}
+
+	/**
+	 * Get a key by its ID.
+	 *
+	 * @param id
+	 *        the ID of the key to get
+	 * @return the canonical key, or {@literal null} if {@code id} is not
+	 *         assigned
+	 */
+	public String keyFor(int id) {
+		if ( id < 0 || id >= counter.get() ) {
+			return null;
+		}
+		return keys.get(id);
+	}
+
+	/**
+	 * Get the number of keys in the dictionary.
+	 *
+	 * @return the number of keys
+	 */
+	public int size() {
+		return counter.get();
+	}
+
+	/**
+	 * Get the maximum number of keys the dictionary will store.
+	 *
+	 * @return the maximum size
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+}
@@ -10,6 +10,7 @@ import java.util.Collection;
 import java.util.List;
 import org.springframework.beans.factory.FactoryBean;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonDeserializer;
@@ -60,9 +61,39 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
  * <dt>featuresToDisable</dt>
  * <dd>A list of {@link SerializationFeature} or {@link DeserializationFeature}
  * flags to disable.</dd>
+ * 
+ * <dt>registerDefaultTypes</dt>
+ * <dd>If {@literal true} then register and warm up the
+ * {@link ObjectMapperTypeRegistry#DEFAULT_TYPES} with the
+ * {@code typeRegistry}. Defaults to {@literal false}.</dd>
+ * 
+ * <dt>registeredTypes</dt>
+ * <dd>A list of types to register and warm up with the
+ * {@code typeRegistry}.</dd>
+ * 
+ * <dt>registeredSamples</dt>
+ * <dd>A list of sample objects whose types should be registered with the
+ * {@code typeRegistry}, warming up with the samples themselves.</dd>
+ * 
+ * <dt>modules</dt>
+ * <dd>A list of additional {@link Module} instances to register with the
+ * mapper, for example a {@link BeanAccessorModule}.</dd>
  * </dl>
+ * 
+ * <p>
+ * Once the mapper has been created, {@link #getTypeRegistry()} provides cached
+ * readers and writers for it, with any configured types already warmed up.
+ * </p>
+ * 
+ * <p>
+ * Mappers for binary data formats, configured the same way, can be created
+ * with {@link #createSmileObjectMapper()}, {@link #createCborObjectMapper()},
+ * or {@link #createObjectMapper(JsonFactory)}. With Spring XML these can be
+ * declared as beans using a {@code factory-bean} of this factory, for example
+ * {@code factory-bean="&objectMapper"}.
+ * </p>
  *
- * @version 1.3
+ * @version 1.4
  */
 public class ObjectMapperFactoryBean extends ObjectMapperModuleSupport
 		implements FactoryBean<ObjectMapper> {
@@ -70,6 +101,11 @@ public class ObjectMapperFactoryBean extends ObjectMapperModuleSupport
 	private JsonInclude.Include serializationInclusion = JsonInclude.Include.NON_NULL;
 	private List<Object> featuresToEnable = null;
 	private List<Object> featuresToDisable = null;
+	private boolean registerDefaultTypes = false;
+	private List<Class<?>> registeredTypes = null;
+	private List<Object> registeredSamples = null;
+	private List<Module> modules = null;
+	private ObjectMapperTypeRegistry typeRegistry;
 
 	@Override
 	public ObjectMapper getObject() throws Exception {
@@ -78,6 +114,101 @@ public class ObjectMapperFactoryBean extends ObjectMapperModuleSupport
 			mapper = new ObjectMapper();
 			setObjectMapper(mapper);
 		}
+		configureObjectMapper(mapper);
+		setupTypeRegistry(mapper);
+		return mapper;
+	}
+
+	/**
+	 * Create a new mapper for a specific data format, configured the same as
+	 * the mapper returned by {@link #getObject()}.
+	 * 
+	 * <p>
+	 * The new mapper has the same serializers, deserializers, key serializers
+	 * and deserializers, features, serialization inclusion, and modules as
+	 * the main mapper, but reads and writes the data format of
+	 * {@code factory}, for example
+	 * {@code com.fasterxml.jackson.dataformat.smile.SmileFactory}.
+	 * </p>
+	 * 
+	 * @param factory
+	 *        the factory of the data format to use
+	 * @return the new mapper
+	 * @since 1.4
+	 */
+	public ObjectMapper createObjectMapper(JsonFactory factory) {
+		ObjectMapper mapper = new ObjectMapper(factory);
+		configureObjectMapper(mapper);
+		return mapper;
+	}
+
+	/**
+	 * Create a new Smile binary JSON mapper, configured the same as the mapper
+	 * returned by {@link #getObject()}.
+	 * 
+	 * <p>
+	 * This requires the {@code jackson-dataformat-smile} library.
+	 * </p>
+	 * 
+	 * @return the new mapper
+	 * @throws IllegalStateException
+	 *         if the Smile library is not available
+	 * @since 1.4
+	 */
+	public ObjectMapper createSmileObjectMapper() {
+		return createObjectMapper(
+				createDataFormatFactory("com.fasterxml.jackson.dataformat.smile.SmileFactory"));
+	}
+
+	/**
+	 * Create a new CBOR mapper, configured the same as the mapper returned by
+	 * {@link #getObject()}.
+	 * 
+	 * <p>
+	 * This requires the {@code jackson-dataformat-cbor} library.
+	 * </p>
+	 * 
+	 * @return the new mapper
+	 * @throws IllegalStateException
+	 *         if the CBOR library is not available
+	 * @since 1.4
+	 */
+	public ObjectMapper createCborObjectMapper() {
+		return createObjectMapper(
+				createDataFormatFactory("com.fasterxml.jackson.dataformat.cbor.CBORFactory"));
+	}
+
+	/**
+	 * Create a data format factory by class name.
+	 * 
+	 * <p>
+	 * The data format libraries are optional, so they are loaded reflectively
+	 * to keep this class usable without them.
+	 * </p>
+	 * 
+	 * @param className
+	 *        the {@link JsonFactory} class name
+	 * @return the new factory
+	 * @throws IllegalStateException
+	 *         if the class is not available
+	 */
+	private static JsonFactory createDataFormatFactory(String className) {
+		try {
+			Class<?> clazz = Class.forName(className, true,
+					ObjectMapperFactoryBean.class.getClassLoader());
+			return (JsonFactory) clazz.newInstance();
+		} catch ( ClassNotFoundException e ) {
+			throw new IllegalStateException("Data format " + className + " not available", e);
+		} catch ( LinkageError e ) {
+			throw new IllegalStateException("Data format " + className + " not available", e);
+		} catch ( InstantiationException e ) {
+			throw new IllegalStateException("Error creating data format " + className, e);
+		} catch ( IllegalAccessException e ) {
+			throw new IllegalStateException("Error creating data format " + className, e);
+		}
+	}
+
+	private void configureObjectMapper(final ObjectMapper mapper) {
 		SimpleModule module = new SimpleModule(getModuleName(), getModuleVersion());
 		if ( getSerializers() != null ) {
 			for ( JsonSerializer<?> serializer : getSerializers() ) {
@@ -105,7 +236,31 @@ public class ObjectMapperFactoryBean extends ObjectMapperModuleSupport
 		setupFeatures(mapper, featuresToEnable, true);
 		setupFeatures(mapper, featuresToDisable, false);
 		mapper.registerModule(module);
-		return mapper;
+		if ( modules != null ) {
+			for ( Module m : modules ) {
+				mapper.registerModule(m);
+			}
+		}
+	}
+
+	private void setupTypeRegistry(final ObjectMapper m) {
+		ObjectMapperTypeRegistry registry = new ObjectMapperTypeRegistry(m);
+		if ( registerDefaultTypes ) {
+			registry.registerDefaultTypes();
+		}
+		if ( registeredTypes != null ) {
+			for ( Class<?> type : registeredTypes ) {
+				registry.register(type, null);
+			}
+		}
+		if ( registeredSamples != null ) {
+			for ( Object sample : registeredSamples ) {
+				if ( sample != null ) {
+					registry.register(sample.getClass(), sample);
+				}
+			}
+		}
+		typeRegistry = registry;
 	}
 
 	private void setupFeatures(final ObjectMapper m, final Collection<?> features, final boolean state) {
@@ -205,4 +360,77 @@ public class ObjectMapperFactoryBean extends ObjectMapperModuleSupport
 		this.featuresToDisable = featuresToDisable;
 	}
 
+	/**
+	 * Get the registry of cached readers and writers for the mapper.
+	 * 
+	 * @return the registry, or {@literal null} if {@link #getObject()} has not
+	 *         been called yet
+	 * @since 1.4
+	 */
+	public ObjectMapperTypeRegistry getTypeRegistry() {
+		return typeRegistry;
+	}
+
+	public boolean isRegisterDefaultTypes() {
+		return registerDefaultTypes;
+	}
+
+	/**
+	 * Set the flag to register the default types with the type registry.
+	 * 
+	 * @param registerDefaultTypes
+	 *        {@literal true} to register and warm up the
+	 *        {@link ObjectMapperTypeRegistry#DEFAULT_TYPES}
+	 * @since 1.4
+	 */
+	public void setRegisterDefaultTypes(boolean registerDefaultTypes) {
+		this.registerDefaultTypes = registerDefaultTypes;
+	}
+
+	public List<Class<?>> getRegisteredTypes() {
+		return registeredTypes;
+	}
+
+	/**
+	 * Set a list of types to register and warm up with the type registry.
+	 * 
+	 * @param registeredTypes
+	 *        the types to register
+	 * @since 1.4
+	 */
+	public void setRegisteredTypes(List<Class<?>> registeredTypes) {
+		this.registeredTypes = registeredTypes;
+	}
+
+	public List<Object> getRegisteredSamples() {
+		return registeredSamples;
+	}
+
+	/**
+	 * Set a list of sample objects to register and warm up with the type
+	 * registry.
+	 * 
+	 * @param registeredSamples
+	 *        the samples to register
+	 * @since 1.4
+	 */
+	public void setRegisteredSamples(List<Object> registeredSamples) {
+		this.registeredSamples = registeredSamples;
+	}
+
+	public List<Module> getModules() {
+		return modules;
+	}
+
+	/**
+	 * Set a list of additional modules to register with the mapper.
+	 * 
+	 * @param modules
+	 *        the modules to register
+	 * @since 1.4
+	 */
+	public void setModules(List<Module> modules) {
+		this.modules = modules;
+	}
+
 }
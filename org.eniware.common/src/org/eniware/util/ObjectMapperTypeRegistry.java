@@ -0,0 +1,234 @@
+/* ==================================================================
+ *  Eniware Open Source:Nikolai Manchev
+ *  Apache License 2.0
+ * ==================================================================
+ */
+
+package org.eniware.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eniware.domain.GeneralDatumMetadata;
+import org.eniware.domain.GeneralDatumSamples;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Registry of pre-resolved {@link ObjectReader} and {@link ObjectWriter}
+ * instances for a configured {@link ObjectMapper}.
+ *
+ * <p>
+ * Readers and writers are created once per type and cached, and
+ * {@link #register(Class, Object)} additionally warms up a type by writing a
+ * sample object and reading it back. This forces Jackson to introspect the
+ * type and create all the serializers and deserializers it needs at startup,
+ * instead of on the first real request. Readers and writers capture the mapper
+ * configuration when they are created, so the mapper must be fully configured
+ * before this registry is used.
+ * </p>
+ *
+ * @version 1.0
+ * @since 1.42
+ */
+public class ObjectMapperTypeRegistry {
+
+	/**
+	 * The types registered by {@link #registerDefaultTypes()}.
+	 */
+	public static final List<Class<?>> DEFAULT_TYPES = Collections
+			.unmodifiableList(Arrays.<Class<?>> asList(GeneralDatumSamples.class,
+					GeneralDatumMetadata.class, DateTime.class, LocalDate.class, LocalDateTime.class,
+					LocalTime.class));
+
+	private static final Logger LOG = LoggerFactory.getLogger(ObjectMapperTypeRegistry.class);
+
+	private final ObjectMapper mapper;
+	private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<Class<?>, ObjectReader>(
+			16);
+	private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>(
+			16);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param mapper
+	 *        the configured mapper to create readers and writers from
+	 */
+	public ObjectMapperTypeRegistry(ObjectMapper mapper) {
+		super();
+		if ( mapper == null ) {
+			throw new IllegalArgumentException("The mapper must be provided.");
+		}
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Get a reader for a type, creating and caching it if needed.
+	 *
+	 * @param type
+	 *        the type to read
+	 * @return the reader
+	 */
+	public ObjectReader readerFor(Class<?> type) {
+		ObjectReader reader = readers.get(type);
+		if ( reader == null ) {
+			reader = mapper.readerFor(type);
+			ObjectReader existing = readers.putIfAbsent(type, reader);
+			if ( existing != null ) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+
+	/**
+	 * Get a writer for a type, creating and caching it if needed.
+	 *
+	 * @param type
+	 *        the type to write; must be the actual runtime class of the objects
+	 *        written, not a superclass
+	 * @return the writer
+	 */
+	public ObjectWriter writerFor(Class<?> type) {
+		ObjectWriter writer = writers.get(type);
+		if ( writer == null ) {
+			writer = mapper.writerFor(type);
+			ObjectWriter existing = writers.putIfAbsent(type, writer);
+			if ( existing != null ) {
+				writer = existing;
+			}
+		}
+		return writer;
+	}
+
+	/**
+	 * Register a type, creating its reader and writer and warming them up.
+	 *
+	 * <p>
+	 * If {@code sample} is {@literal null} a sample is created via
+	 * {@link #createSample(Class)}. The sample is written to JSON and read back.
+	 * Any error in doing so is logged and otherwise ignored; the type stays
+	 * registered.
+	 * </p>
+	 *
+	 * @param type
+	 *        the type to register
+	 * @param sample
+	 *        an optional sample instance to warm up with
+	 * @return {@literal true} if the sample was successfully written and read
+	 */
+	public boolean register(Class<?> type, Object sample) {
+		ObjectReader reader = readerFor(type);
+		ObjectWriter writer = writerFor(type);
+		Object obj = (sample != null ? sample : createSample(type));
+		if ( obj == null ) {
+			return false;
+		}
+		try {
+			byte[] json = writer.writeValueAsBytes(obj);
+			reader.readValue(json);
+			return true;
+		} catch ( Exception e ) {
+			LOG.debug("Unable to warm up JSON mapping for {}: {}", type.getName(), e.toString());
+		}
+		return false;
+	}
+
+	/**
+	 * Register all the {@link #DEFAULT_TYPES}.
+	 */
+	public void registerDefaultTypes() {
+		for ( Class<?> type : DEFAULT_TYPES ) {
+			register(type, null);
+		}
+	}
+
+	/**
+	 * Create a sample instance of a type to warm up with.
+	 *
+	 * <p>
+	 * Samples of the {@link #DEFAULT_TYPES} have representative values
+	 * populated. Datum samples and metadata are populated from plain maps and
+	 * sets rather than their {@code put} and {@code addTag} methods, so warming
+	 * up does not add the sample property names and tags to the process-wide
+	 * dictionaries. For other types a new instance is created via a public
+	 * no-argument constructor, if available.
+	 * </p>
+	 *
+	 * @param type
+	 *        the type to create the sample for
+	 * @return the sample, or {@literal null} if one cannot be created
+	 */
+	protected Object createSample(Class<?> type) {
+		if ( GeneralDatumSamples.class.equals(type) ) {
+			Map<String, Number> i = new LinkedHashMap<String, Number>(4);
+			i.put("watts", 1);
+			i.put("voltage", 1.1);
+			Map<String, Number> a = new LinkedHashMap<String, Number>(4);
+			a.put("wattHours", 1L);
+			Map<String, Object> st = new LinkedHashMap<String, Object>(4);
+			st.put("status", "ok");
+			GeneralDatumSamples s = new GeneralDatumSamples(i, a, st);
+			s.setTags(warmUpTags());
+			return s;
+		} else if ( GeneralDatumMetadata.class.equals(type) ) {
+			Map<String, Object> info = new LinkedHashMap<String, Object>(4);
+			info.put("name", "warm");
+			Map<String, Object> watts = new LinkedHashMap<String, Object>(4);
+			watts.put("unit", "W");
+			Map<String, Map<String, Object>> pm = new LinkedHashMap<String, Map<String, Object>>(4);
+			pm.put("watts", watts);
+			GeneralDatumMetadata m = new GeneralDatumMetadata();
+			m.setInfo(info);
+			m.setPropertyInfo(pm);
+			m.setTags(warmUpTags());
+			return m;
+		} else if ( DateTime.class.equals(type) ) {
+			return new DateTime(0, DateTimeZone.UTC);
+		} else if ( LocalDate.class.equals(type) ) {
+			return new LocalDate(1970, 1, 1);
+		} else if ( LocalDateTime.class.equals(type) ) {
+			return new LocalDateTime(1970, 1, 1, 0, 0);
+		} else if ( LocalTime.class.equals(type) ) {
+			return new LocalTime(0, 0);
+		}
+		try {
+			return type.newInstance();
+		} catch ( Exception e ) {
+			LOG.debug("Unable to create sample {} instance: {}", type.getName(), e.toString());
+		}
+		return null;
+	}
+
+	private static Set<String> warmUpTags() {
+		Set<String> tags = new LinkedHashSet<String>(2);
+		tags.add("warm");
+		return tags;
+	}
+
+	/**
+	 * Get the mapper used by this registry.
+	 *
+	 * @return the mapper
+	 */
+	public ObjectMapper getObjectMapper() {
+		return mapper;
+	}
+
+}
@@ -6,7 +6,13 @@
 
 package org.eniware.util;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A registrar of {@link PropertySerializer} implementations mapped to
@@ -21,16 +27,29 @@ import java.util.Map;
  *   
  *   <dt>classSerializers</dt>
  *   <dd>A property type mapping to {@link PropertySerializer} implementations
- *   for serializing those properties with.</dd>
+ *   for serializing those properties with. A mapping applies to the named
+ *   class and all its subclasses and implementations, with the most specific
+ *   mapping used.</dd>
  * </dl>
+ * 
+ * <p>Resolved {@code classSerializers} mappings are cached by property type.
+ * The cache is cleared whenever that property is set; if the mapping is
+ * modified in place afterwards, {@link #clearCache()} must be called.</p>
  *
- * @version $Revision$ $Date$
+ * @version 1.1
  */
 public class PropertySerializerRegistrar {
 
+	/** Cache value for properties without any serializer. */
+	private static final Object NO_SERIALIZER = new Object();
+
 	private Map<String, PropertySerializer> propertySerializers = null;
 	private Map<String, PropertySerializer> classSerializers = null;
 
+	/** The resolved class serializer cache, replaced whenever the mappings change. */
+	private volatile ConcurrentMap<Class<?>, Object> cache = new ConcurrentHashMap<Class<?>, Object>(
+			64);
+
 	/**
 	 * Return a configured {@link PropertySerializer} for either a specific property
 	 * name or property type.
@@ -38,23 +57,94 @@ public class PropertySerializerRegistrar {
 	 * <p>The {@code propertySerializers} mappings are consulted first (using the 
 	 * passed in {@code propertyName} value), and if no match is found there the
 	 * {@code classSerializers} mappings are consulted (using the passed in
-	 * {@code propertyType} value). If no match is found, <em>null</em> is returned.</p>
+	 * {@code propertyType} value). For the {@code classSerializers} an exact
+	 * match on the type is used if available; otherwise the closest superclass
+	 * (other than {@code Object}) mapped, and then the closest interface mapped,
+	 * is used. If no match is found, <em>null</em> is returned.</p>
+	 * 
+	 * <p>Results for the {@code classSerializers} mappings are cached by type,
+	 * so after the first call for a given type this is a single lock-free
+	 * lookup.</p>
 	 * 
 	 * @param propertyName the name of the property to serialize
 	 * @param propertyType the type of property to serialize
 	 * @return configured PropertySerializer, or <em>null</em> if none found
 	 */
 	public PropertySerializer serializerFor(String propertyName, Class<?> propertyType) {
-		if ( propertyName != null && propertySerializers != null 
-				&& propertySerializers.containsKey(propertyName) ) {
-			return propertySerializers.get(propertyName);
+		final Map<String, PropertySerializer> names = propertySerializers;
+		if ( propertyName != null && names != null && names.containsKey(propertyName) ) {
+			return names.get(propertyName);
+		}
+		if ( propertyType == null ) {
+			return null;
 		}
-		if ( propertyType != null && classSerializers != null 
-				&& classSerializers.containsKey(propertyType.getName()) ) {
-			return classSerializers.get(propertyType.getName());
+		final ConcurrentMap<Class<?>, Object> c = cache;
+		Object result = c.get(propertyType);
+		if ( result == null ) {
+			PropertySerializer ser = serializerForType(classSerializers, propertyType);
+			result = (ser != null ? ser : NO_SERIALIZER);
+			if ( c == cache ) {
+				// only cache if the mappings have not changed while resolving
+				c.putIfAbsent(propertyType, result);
+			}
+		}
+		return (result == NO_SERIALIZER ? null : (PropertySerializer) result);
+	}
+
+	private static PropertySerializer serializerForType(Map<String, PropertySerializer> serializers,
+			Class<?> propertyType) {
+		if ( serializers == null || serializers.isEmpty() ) {
+			return null;
+		}
+		if ( serializers.containsKey(propertyType.getName()) ) {
+			return serializers.get(propertyType.getName());
+		}
+		PropertySerializer ser;
+
+		// look for closest superclass
+		for ( Class<?> c = propertyType.getSuperclass(); c != null
+				&& c != Object.class; c = c.getSuperclass() ) {
+			ser = serializers.get(c.getName());
+			if ( ser != null ) {
+				return ser;
+			}
+		}
+
+		// look for closest interface, breadth first
+		Deque<Class<?>> queue = new ArrayDeque<Class<?>>();
+		Set<Class<?>> seen = new HashSet<Class<?>>();
+		for ( Class<?> c = propertyType; c != null; c = c.getSuperclass() ) {
+			for ( Class<?> i : c.getInterfaces() ) {
+				queue.add(i);
+			}
+		}
+		while ( !queue.isEmpty() ) {
+			Class<?> i = queue.removeFirst();
+			if ( !seen.add(i) ) {
+				continue;
+			}
+			ser = serializers.get(i.getName());
+			if ( ser != null ) {
+				return ser;
+			}
+			for ( Class<?> parent : i.getInterfaces() ) {
+				queue.add(parent);
+			}
 		}
 		return null;
 	}
+
+	/**
+	 * Clear the resolved serializer cache.
+	 * 
+	 * <p>This must be called if the {@code classSerializers} map is modified
+	 * in place.</p>
+	 * 
+	 * @since 1.1
+	 */
+	public void clearCache() {
+		cache = new ConcurrentHashMap<Class<?>, Object>(64);
+	}
 	
 	/**
 	 * Attempt to serialize a property using a configured {@link PropertySerializer},
@@ -111,6 +201,7 @@ public class PropertySerializerRegistrar {
 	public void setClassSerializers(
 			Map<String, PropertySerializer> classSerializers) {
 		this.classSerializers = classSerializers;
+		clearCache();
 	}
 	
 }